@@ -0,0 +1,63 @@
+package bench;
+
+import cipher.Caesar;
+import cipher.Vernam;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ciphering with a known key, through the String and the byte[] entry points.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CipherBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    @Param({"1", "16", "256"})
+    public int keyLength;
+
+    private String text;
+    private char[] key;
+    private byte[] byteKey;
+    private byte[] buffer;
+    private byte[] table;
+
+    @Setup
+    public void setup() {
+        text = Corpus.plain(size);
+        key = Corpus.key(keyLength).toCharArray();
+        byteKey = Corpus.key(keyLength).getBytes();
+        buffer = text.getBytes();
+        table = Caesar.shiftTable(keyLength);
+    }
+
+    @Benchmark
+    public String caesarCipher() {
+        return Caesar.cipher(text, keyLength);
+    }
+
+    @Benchmark
+    public String vernamCipher() {
+        return Vernam.cipher(text, key);
+    }
+
+    @Benchmark
+    public byte[] caesarBytes() {
+        // the buffer stays made of letters, whatever the amount of times it is shifted
+        Caesar.cipher(buffer, 0, buffer.length, table);
+        return buffer;
+    }
+
+    @Benchmark
+    public byte[] vernamBytes() {
+        Vernam.cipher(buffer, 0, buffer.length, byteKey, 0);
+        return buffer;
+    }
+}
@@ -0,0 +1,120 @@
+package bench;
+
+import proc.Preprocess;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Builds the texts the benchmarks run on, from {@code data/aliceinwonderland.txt}.
+ * <p>
+ * The path to the corpus can be changed with the {@code corpus} system property. It is looked up from the current
+ * directory and from its parent, so the benchmarks can be run from the repository or from this module.
+ */
+final class Corpus {
+
+    private static final String DEFAULT_CORPUS = "data/aliceinwonderland.txt";
+
+    private static String raw;
+
+    private Corpus() {
+    }
+
+    /**
+     * Returns the corpus as read from disk, repeated or truncated to a given length.
+     *
+     * @param size the length of the text
+     * @return a text of {@code size} characters
+     */
+    static String raw(int size) {
+        return scale(load(), size);
+    }
+
+    /**
+     * Returns the sanitized corpus, repeated or truncated to a given length.
+     *
+     * @param size the length of the text
+     * @return a text of {@code size} lowercase letters
+     */
+    static String plain(int size) {
+        return scale(Preprocess.sanitizeToAlpha(load()), size);
+    }
+
+    /**
+     * Builds a random key of lowercase letters. The same length always gives the same key.
+     *
+     * @param length the length of the key
+     * @return the key
+     */
+    static String key(int length) {
+        Random random = new Random(length);
+        char[] key = new char[length];
+        for (int i = 0; i < length; i++) {
+            key[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(key);
+    }
+
+    /**
+     * Writes a text made of lines of the corpus picked at random, up to a given size.
+     * <p>
+     * Unlike {@link #raw(int)}, the text doesn't repeat itself every few hundred kilobytes, which would make long
+     * texts easier to crack than real ones.
+     *
+     * @param path   the path to write the text to, as UTF-8
+     * @param size   the size of the text, in bytes
+     * @param random the source of the picked lines
+     * @throws IOException if the text couldn't be written
+     */
+    static void sample(Path path, long size, Random random) throws IOException {
+        String[] lines = load().lines().filter(line -> !line.isBlank()).toArray(String[]::new);
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16)) {
+            long written = 0;
+            while (written < size) {
+                byte[] line = (lines[random.nextInt(lines.length)] + "\n").getBytes(StandardCharsets.UTF_8);
+                int length = (int) Math.min(line.length, size - written);
+                // the last line is cut before a character rather than in its middle, and padded with line breaks
+                while (length < line.length && length > 0 && (line[length] & 0xC0) == 0x80) length--;
+                out.write(line, 0, length);
+                written += length;
+                if (length < line.length) {
+                    while (written < size) {
+                        out.write('\n');
+                        written++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static String scale(String text, int size) {
+        StringBuilder sb = new StringBuilder(size);
+        while (sb.length() < size) {
+            sb.append(text, 0, Math.min(text.length(), size - sb.length()));
+        }
+        return sb.toString();
+    }
+
+    private static synchronized String load() {
+        if (raw != null) return raw;
+
+        String name = System.getProperty("corpus", DEFAULT_CORPUS);
+        Path path = Paths.get(name);
+        if (!Files.exists(path)) path = Paths.get("..").resolve(name);
+
+        try {
+            raw = Files.readString(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't read the corpus " + name, e);
+        }
+        return raw;
+    }
+}
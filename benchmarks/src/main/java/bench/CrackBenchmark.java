@@ -0,0 +1,46 @@
+package bench;
+
+import cipher.Caesar;
+import cipher.Vernam;
+import org.openjdk.jmh.annotations.*;
+import proc.Jobs;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deciphering without the key, cracking included.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CrackBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    @Param({"1", "16", "256"})
+    public int keyLength;
+
+    private String caesarText;
+    private String vernamText;
+
+    @Setup
+    public void setup() {
+        String plain = Corpus.plain(size);
+        caesarText = Caesar.cipher(plain, keyLength);
+        vernamText = Vernam.cipher(plain, Corpus.key(keyLength).toCharArray());
+    }
+
+    @Benchmark
+    public Jobs.Outcome caesarDecipher() {
+        return Jobs.decrypt("Caesar", caesarText, "");
+    }
+
+    @Benchmark
+    public Jobs.Outcome vernamDecipher() {
+        return Jobs.decrypt("Vernam", vernamText, "");
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import cipher.Anytime;
+import cipher.Caesar;
+import cipher.IncrementalAnalyzer;
+import cipher.KeyLengthAnalyzer;
+import cipher.Profile;
+import cipher.Vigenere;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that keys are still cracked from ciphered texts holding other characters than letters.
+ * <p>
+ * A ciphered text is rarely made of letters alone : it gets wrapped in lines, ends with a line break, or keeps the
+ * punctuation of the plain text. Those characters tell nothing about the key, and must not keep it from being found.
+ * Each case ciphers the corpus with a known key, adds such characters, cracks the key and compares it. The failed cases
+ * are printed to the standard error and the exit code is then 1.
+ */
+public final class CrackCheck {
+
+    private static final int SIZE = 1 << 16;
+
+    private static final Duration DEADLINE = Duration.ofSeconds(10);
+
+    private CrackCheck() {
+    }
+
+    public static void main(String[] args) {
+        List<String> failures = new ArrayList<>();
+        String plain = Corpus.plain(SIZE);
+
+        // the Caesar cipher shifts every character, so the line breaks are added once it is ciphered
+        String caesar = wrap(Caesar.cipher(plain, 7)) + "\n";
+        check(failures, "Caesar with line breaks", "7", String.valueOf(Caesar.crackKey(caesar, Profile.ENGLISH)));
+
+        // the Vigenere cipher leaves the spaces and punctuation as they are, but they still use up a letter of the key
+        String vigenere = Vigenere.cipher(Corpus.raw(SIZE).toLowerCase(), "lemon".toCharArray()) + "\n";
+        check(failures, "Vigenere with punctuation", "lemon",
+                new String(Vigenere.crackKey(vigenere, KeyLengthAnalyzer.DEFAULT_MAX_PERIOD, Profile.ENGLISH)));
+
+        // within a deadline, the columns are solved again on the whole text once the sample is cracked
+        String longer = Vigenere.cipher(Corpus.raw(4 * SIZE).toLowerCase(), "lemon".toCharArray()) + "\n";
+        check(failures, "Caesar with line breaks within a deadline", "7",
+                Anytime.crackCaesar(caesar, DEADLINE, Profile.ENGLISH).key());
+        check(failures, "Vigenere with punctuation within a deadline", "lemon", Anytime.crackVigenere(longer,
+                KeyLengthAnalyzer.DEFAULT_MAX_PERIOD, DEADLINE, ForkJoinPool.commonPool(), Profile.ENGLISH).key());
+
+        // a growing text is analysed from the counts of the symbols of its columns
+        IncrementalAnalyzer analyzer = new IncrementalAnalyzer(8).append(caesar);
+        check(failures, "Caesar with line breaks from counts", "7",
+                String.valueOf(analyzer.rankCaesar(Profile.ENGLISH).get(0).key()));
+        analyzer = new IncrementalAnalyzer(8).append(vigenere);
+        check(failures, "Vigenere with punctuation from counts", "lemon",
+                new String(analyzer.solveVigenere(5, Profile.ENGLISH)));
+
+        failures.forEach(System.err::println);
+        if (!failures.isEmpty()) System.exit(1);
+        System.out.println("Every key was cracked");
+    }
+
+    private static void check(List<String> failures, String name, String expected, String cracked) {
+        System.out.println(name + " : " + cracked);
+        if (!cracked.equals(expected)) failures.add(name + " : cracked " + cracked + " instead of " + expected);
+    }
+
+    /**
+     * Breaks a text in lines of 80 characters.
+     */
+    private static String wrap(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + text.length() / 80);
+        for (int i = 0; i < text.length(); i += 80) {
+            if (i > 0) sb.append('\n');
+            sb.append(text, i, Math.min(text.length(), i + 80));
+        }
+        return sb.toString();
+    }
+}
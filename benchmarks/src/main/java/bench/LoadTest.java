@@ -0,0 +1,356 @@
+package bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the whole command line, from ciphering a text to deciphering it without the key, on texts of growing sizes, and
+ * checks it against a previous run.
+ * <p>
+ * Each text is made of lines of the corpus picked at random (see {@link Corpus#sample(Path, long, Random)}), ciphered
+ * with a random Caesar key and with random Vernam keys of each given length. Every step is a separate run of
+ * {@code Main}, in its own JVM, so that the times are the ones a user gets, JVM startup included. For each case, the
+ * report holds the time and throughput of both steps, the peak heap and resident memory of the JVMs, and whether the
+ * cracked key is the one the text was ciphered with. It is written to {@code report.csv} and {@code report.json} in
+ * the output directory.
+ * <p>
+ * Given the {@code report.csv} of a previous run with {@code --baseline}, the cases of both runs are compared : a case
+ * whose throughput dropped by more than the threshold, or whose key was found before and no longer is, is a
+ * regression. The throughput is only checked on texts of at least {@code --min-size}, which take long enough for JVM
+ * startup not to drown it. The regressions are printed to the standard error and the exit code is then 2.
+ * <p>
+ * N.B. : the cracked key and the peak memory are read from the {@code --metrics json} output of {@code Main}, the
+ * resident memory only being known on Linux.
+ */
+public final class LoadTest {
+
+    private static final String USAGE = """
+            bench.LoadTest [-o path/to/output] [--sizes 1K,1M,100M,1G] [--key-lengths 1,16,256] [--seed n]
+                           [--baseline path/to/report.csv] [--threshold x] [--min-size 1M] [--jvm "options"]
+                -o path/to/output       -> the directory where the texts and the report are written (default load)
+                --sizes                 -> the sizes of the plain texts, in bytes, with an optional K, M or G suffix
+                --key-lengths           -> the lengths of the Vernam keys
+                --seed n                -> the seed of the texts and the keys (default 42)
+                --baseline path         -> the report.csv of a previous run to check this one against
+                --threshold x           -> how much the throughput may drop before it is a regression (default 0.25)
+                --min-size              -> the size below which the throughput isn't checked, as JVM startup
+                                           outweighs the work (default 1M)
+                --jvm "options"         -> the options of the JVMs running Main, e.g. "-Xmx4g\"""";
+
+    private static final String[] COLUMNS = {"cipher", "size", "keyLength", "encryptMillis", "decryptMillis",
+            "encryptMBps", "decryptMBps", "peakHeap", "peakRss", "keyMatched", "error"};
+
+    private static final Pattern KEY = Pattern.compile("\"key\":\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern ESCAPE = Pattern.compile("\\\\(?:u([0-9a-fA-F]{4})|(.))");
+    private static final Pattern PEAK_HEAP = Pattern.compile("\"peakHeap\":(-?\\d+)");
+    private static final Pattern PEAK_RSS = Pattern.compile("\"peakRss\":(-?\\d+)");
+
+    private LoadTest() {
+    }
+
+    /**
+     * The outcome of one case : a cipher and key length on a text of a given size.
+     */
+    record Row(String cipher, long size, int keyLength, double encryptMillis, double decryptMillis, long peakHeap,
+               long peakRss, boolean keyMatched, String error) {
+
+        String id() {
+            return cipher + "/" + size + "/" + keyLength;
+        }
+
+        double encryptMBps() {
+            return throughput(encryptMillis);
+        }
+
+        double decryptMBps() {
+            return throughput(decryptMillis);
+        }
+
+        private double throughput(double millis) {
+            return millis > 0 ? size / 1e3 / millis : 0;
+        }
+
+        Object[] values() {
+            return new Object[]{cipher, size, keyLength, format(encryptMillis), format(decryptMillis),
+                    format(encryptMBps()), format(decryptMBps()), peakHeap, peakRss, keyMatched, error};
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length || !args[i].startsWith("-")) {
+                System.out.println(USAGE);
+                System.exit(1);
+            }
+            options.put(args[i], args[i + 1]);
+        }
+
+        Path output = Paths.get(options.getOrDefault("-o", "load"));
+        long[] sizes;
+        int[] keyLengths;
+        long seed;
+        double threshold;
+        long minSize;
+        try {
+            sizes = Arrays.stream(options.getOrDefault("--sizes", "1K,1M,100M,1G").split(","))
+                    .mapToLong(LoadTest::parseSize).toArray();
+            keyLengths = Arrays.stream(options.getOrDefault("--key-lengths", "1,16,256").split(","))
+                    .mapToInt(Integer::parseInt).toArray();
+            seed = Long.parseLong(options.getOrDefault("--seed", "42"));
+            threshold = Double.parseDouble(options.getOrDefault("--threshold", "0.25"));
+            minSize = parseSize(options.getOrDefault("--min-size", "1M"));
+        } catch (NumberFormatException e) {
+            System.out.println(USAGE);
+            System.exit(1);
+            return;
+        }
+        String jvm = options.getOrDefault("--jvm", "").trim();
+        List<String> jvmOptions = jvm.isEmpty() ? List.of() : List.of(jvm.split("\\s+"));
+
+        Map<String, Row> baseline = options.containsKey("--baseline")
+                ? readCsv(Paths.get(options.get("--baseline"))) : Map.of();
+
+        Files.createDirectories(output);
+        Random random = new Random(seed);
+        List<Row> rows = new ArrayList<>();
+
+        for (long size : sizes) {
+            Path plain = output.resolve("plain-" + size + ".txt");
+            Corpus.sample(plain, size, random);
+
+            rows.add(run(output, plain, size, "Caesar", String.valueOf(1 + random.nextInt(25)), jvmOptions));
+            for (int keyLength : keyLengths) {
+                rows.add(run(output, plain, size, "Vernam", randomKey(random, keyLength), jvmOptions));
+            }
+
+            // the texts of the largest sizes would soon fill the disk
+            Files.deleteIfExists(plain);
+        }
+
+        Files.writeString(output.resolve("report.csv"), toCsv(rows));
+        Files.writeString(output.resolve("report.json"), toJson(rows));
+        System.out.println("The report is now saved at : " + output.resolve("report.csv"));
+
+        List<String> regressions = compare(rows, baseline, threshold, minSize);
+        regressions.forEach(System.err::println);
+        if (!regressions.isEmpty()) System.exit(2);
+    }
+
+    /**
+     * Ciphers a plain text then deciphers it without the key, each in a new JVM.
+     */
+    private static Row run(Path output, Path plain, long size, String cipher, String key, List<String> jvmOptions)
+            throws IOException, InterruptedException {
+        Path ciphered = output.resolve(cipher.toLowerCase(Locale.ROOT) + "-" + size + ".txt");
+        Path deciphered = output.resolve(cipher.toLowerCase(Locale.ROOT) + "-" + size + ".out.txt");
+        int keyLength = cipher.equals("Caesar") ? 1 : key.length();
+        System.out.printf("%s on %d bytes with a key of length %d%n", cipher, size, keyLength);
+
+        try {
+            Result encrypt = main(jvmOptions, "encrypt", "-c", cipher, "-f", plain.toString(), "-k", key,
+                    "-o", ciphered.toString(), "--metrics", "json");
+            if (encrypt.failed())
+                return new Row(cipher, size, keyLength, encrypt.millis, 0, -1, -1, false, encrypt.lastLine());
+
+            Result decrypt = main(jvmOptions, "decrypt", "-c", cipher, "-f", ciphered.toString(),
+                    "-o", deciphered.toString(), "--metrics", "json");
+            long peakHeap = Math.max(encrypt.peak(PEAK_HEAP), decrypt.peak(PEAK_HEAP));
+            long peakRss = Math.max(encrypt.peak(PEAK_RSS), decrypt.peak(PEAK_RSS));
+            if (decrypt.failed()) {
+                return new Row(cipher, size, keyLength, encrypt.millis, decrypt.millis, peakHeap, peakRss, false,
+                        decrypt.lastLine());
+            }
+
+            boolean keyMatched = key.equals(decrypt.key());
+            return new Row(cipher, size, keyLength, encrypt.millis, decrypt.millis, peakHeap, peakRss, keyMatched, "");
+        } finally {
+            Files.deleteIfExists(ciphered);
+            Files.deleteIfExists(deciphered);
+        }
+    }
+
+    /**
+     * What a run of {@code Main} printed, how it ended and how long it took.
+     */
+    private record Result(String output, int exitCode, double millis) {
+
+        /**
+         * Tells whether the run failed : {@code Main} reports some errors without an exit code, but then never tells
+         * where it saved the text.
+         */
+        boolean failed() {
+            return exitCode != 0 || !output.contains("is now saved at");
+        }
+
+        /**
+         * Returns the key {@code Main} reported in its {@code --metrics json} output, or null if it reported none.
+         */
+        String key() {
+            Matcher matcher = KEY.matcher(output);
+            if (!matcher.find()) return null;
+            return ESCAPE.matcher(matcher.group(1)).replaceAll(escape -> Matcher.quoteReplacement(
+                    escape.group(1) != null ? String.valueOf((char) Integer.parseInt(escape.group(1), 16))
+                            : escape.group(2)));
+        }
+
+        long peak(Pattern pattern) {
+            Matcher matcher = pattern.matcher(output);
+            return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+        }
+
+        String lastLine() {
+            String[] lines = output.strip().split("\\R");
+            return lines[lines.length - 1];
+        }
+    }
+
+    /**
+     * Runs {@code Main} in a new JVM, on the class path of this one.
+     */
+    private static Result main(List<String> jvmOptions, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        // the ciphered Vernam texts hold characters that only UTF-8 writes back as they are
+        command.add("-Dfile.encoding=UTF-8");
+        command.addAll(jvmOptions);
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), "Main"));
+        command.addAll(List.of(args));
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        int exitCode = process.waitFor();
+        return new Result(output, exitCode, (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Lists the cases that got slower or stopped finding their key since the baseline.
+     * <p>
+     * The throughput of texts smaller than {@code minSize} isn't checked : their time is mostly the startup of the
+     * JVMs, which varies too much from one run to the next.
+     */
+    private static List<String> compare(List<Row> rows, Map<String, Row> baseline, double threshold, long minSize) {
+        List<String> regressions = new ArrayList<>();
+        for (Row row : rows) {
+            Row base = baseline.get(row.id());
+            if (base == null) continue;
+
+            if (base.keyMatched() && !row.keyMatched())
+                regressions.add(row.id() + " : the key is no longer found");
+            if (row.size() < minSize) continue;
+
+            if (row.encryptMBps() < base.encryptMBps() * (1 - threshold)) {
+                regressions.add(String.format(Locale.ROOT, "%s : ciphering dropped from %.3f to %.3f MB/s",
+                        row.id(), base.encryptMBps(), row.encryptMBps()));
+            }
+            if (row.decryptMBps() < base.decryptMBps() * (1 - threshold)) {
+                regressions.add(String.format(Locale.ROOT, "%s : deciphering dropped from %.3f to %.3f MB/s",
+                        row.id(), base.decryptMBps(), row.decryptMBps()));
+            }
+        }
+        return regressions;
+    }
+
+    private static String toCsv(List<Row> rows) {
+        StringBuilder csv = new StringBuilder(String.join(",", COLUMNS)).append('\n');
+        for (Row row : rows) {
+            Object[] values = row.values();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) csv.append(',');
+                // the error is the only free text, so it is kept on one line and without commas
+                csv.append(String.valueOf(values[i]).replaceAll("[,\\r\\n]", " "));
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static String toJson(List<Row> rows) {
+        StringBuilder json = new StringBuilder("[");
+        for (int r = 0; r < rows.size(); r++) {
+            if (r > 0) json.append(',');
+            json.append("\n  {");
+            Object[] values = rows.get(r).values();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) json.append(',');
+                json.append('"').append(COLUMNS[i]).append("\":");
+                if (values[i] instanceof String text && (i == 0 || i == values.length - 1)) {
+                    json.append('"').append(text.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+                } else {
+                    json.append(values[i]);
+                }
+            }
+            json.append('}');
+        }
+        return json.append("\n]\n").toString();
+    }
+
+    /**
+     * Reads the cases of a previous report, by cipher, size and key length.
+     */
+    private static Map<String, Row> readCsv(Path path) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't read the baseline " + path, e);
+        }
+
+        Map<String, Integer> index = new HashMap<>();
+        String[] header = lines.get(0).split(",");
+        for (int i = 0; i < header.length; i++) {
+            index.put(header[i], i);
+        }
+
+        Map<String, Row> rows = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            String[] v = line.split(",", -1);
+            Row row = new Row(v[index.get("cipher")], Long.parseLong(v[index.get("size")]),
+                    Integer.parseInt(v[index.get("keyLength")]), Double.parseDouble(v[index.get("encryptMillis")]),
+                    Double.parseDouble(v[index.get("decryptMillis")]), Long.parseLong(v[index.get("peakHeap")]),
+                    Long.parseLong(v[index.get("peakRss")]), Boolean.parseBoolean(v[index.get("keyMatched")]),
+                    v[index.get("error")]);
+            rows.put(row.id(), row);
+        }
+        return rows;
+    }
+
+    private static long parseSize(String size) {
+        size = size.trim().toUpperCase(Locale.ROOT);
+        int shift = switch (size.charAt(size.length() - 1)) {
+            case 'K' -> 10;
+            case 'M' -> 20;
+            case 'G' -> 30;
+            default -> 0;
+        };
+        return Long.parseLong(shift == 0 ? size : size.substring(0, size.length() - 1)) << shift;
+    }
+
+    private static String randomKey(Random random, int length) {
+        char[] key = new char[length];
+        for (int i = 0; i < length; i++) {
+            key[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(key);
+    }
+}
@@ -0,0 +1,33 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import proc.Preprocess;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sanitizing raw text before ciphering.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PreprocessBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = Corpus.raw(size);
+    }
+
+    @Benchmark
+    public String sanitizeToAlpha() {
+        return Preprocess.sanitizeToAlpha(text);
+    }
+}
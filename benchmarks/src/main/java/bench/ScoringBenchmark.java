@@ -0,0 +1,45 @@
+package bench;
+
+import cipher.Histogram;
+import cipher.Util;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting letters and scoring a text against English.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScoringBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = Corpus.plain(size);
+    }
+
+    @Benchmark
+    public Map<Character, Integer> getFreq() {
+        return Util.getFreq(text);
+    }
+
+    @Benchmark
+    public double chiSquare() {
+        return Util.chiSquare(text);
+    }
+
+    @Benchmark
+    public double histogramIC() {
+        return new Histogram().count(text).indexOfCoincidence();
+    }
+}
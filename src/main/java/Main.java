@@ -1,115 +1,478 @@
+import cipher.Anytime;
 import cipher.Caesar;
+import cipher.Candidate;
+import cipher.IncrementalAnalyzer;
+import cipher.Kernels;
+import cipher.KeyLengthAnalyzer;
+import cipher.Profile;
+import cipher.Progressive;
 import cipher.Vernam;
+import cipher.Vigenere;
+import metrics.Metrics;
+import metrics.Phase;
+import proc.Batch;
+import proc.BinaryCipher;
+import proc.CrackCache;
+import proc.Jobs;
+import proc.MappedCipher;
 import proc.Preprocess;
+import proc.Server;
+import proc.StreamCipher;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
 public class Main {
 
+    private static final String USAGE = """
+            encrypt|decrypt -c Caesar|Vernam|Vigenere -f path/to/plaintext [-k key] -o path/to/output [--stream]
+            batch -c Caesar|Vernam|Vigenere -f path/to/directory|manifest [-k key] -o path/to/output/directory [--encrypt]
+            profile -f path/to/corpus -o path/to/profile
+            analyze -c Caesar|Vernam|Vigenere -f path/to/chunk -s path/to/checkpoint
+            serve [-p port]
+            common options : [--verbose] to print the progress of cracking,
+                             [--metrics json] to print the time spent in each phase on exit,
+                             [--scalar] to use the scalar loops even if jdk.incubator.vector is enabled,
+                             [--key-length ic|kasiski|combined] to rank key lengths by index of coincidence (default),
+                             by the distances between repeated trigrams and quadgrams, or by both""";
+
+    private static final String ENCRYPT_USAGE = """
+            encrypt
+                -c Caesar|Vernam|Vigenere -> the type of cipher
+                -f path/to/plaintext    -> the path to the text to cipher, or - to read the standard input
+                -k key                  -> the key used to cipher : an integer for Caesar, a string for Vernam,
+                                           letters for Vigenere
+                -o path/to/output       -> the path where the ciphered text will be stored, or - for the standard output
+                [--stream]              -> process the text chunk by chunk instead of loading it whole
+                [--threads n]           -> the amount of threads the text is ciphered on (default 1)
+                [--binary]              -> write the ciphered letters as raw bytes after a small header, instead of
+                                           text : the output is as large as the sanitized text (not with Vigenere)
+                                           and a Vernam key must be made of ISO-8859-1 characters
+                [--mapped]              -> like --binary, but memory-map the files segment by segment instead of
+                                           loading them, for texts of any size (used anyway over 1 GB)""";
+
+    private static final String DECRYPT_USAGE = """
+            decrypt
+                -c Caesar|Vernam|Vigenere -> the type of cipher
+                -f path/to/plaintext    -> the path to the text to decipher, or - to read the standard input
+                                        -> a file ciphered with --binary is detected and read as raw bytes
+                                        -> it is memory-mapped with --mapped, or when it is over 1 GB
+                [-k key]                -> the key used to decipher : an integer for Caesar, a string for Vernam,
+                                           letters for Vigenere
+                                        -> if not provided, the key will be cracked autonomously
+                -o path/to/output       -> the path where the deciphered text will be stored, or - for the standard output
+                [--stream]              -> process the text chunk by chunk instead of loading it whole (requires -k)
+                [--max-key-length n]    -> the longest Vernam or Vigenere key length tried when cracking (default 1000)
+                [--threads n]           -> the amount of threads the text is deciphered and cracked on (default 1)
+                [--profile path]        -> the language profile the plain text is compared to when cracking (default English)
+                [--confidence x]        -> crack from growing prefixes of the text, until the key is found with
+                                           a confidence x between 0 and 1 (e.g. 0.8), instead of the whole text
+                                           (not with Vigenere)
+                [--deadline ms]         -> stop cracking after ms milliseconds and use the best key found so far
+                [--cache path]          -> look the key up in a cache file before cracking it, and store it there
+                                           (not with --profile, --max-key-length or --confidence)
+                                        -> keys cracked before a --deadline ran out aren't stored""";
+
+    private static final String BATCH_USAGE = """
+            batch
+                -c Caesar|Vernam|Vigenere -> the type of cipher
+                -f path/to/input        -> a directory holding the files to process, or a manifest listing one file per line
+                [-k key]                -> the key used : an integer for Caesar, a string for Vernam,
+                                           letters for Vigenere
+                                        -> if not provided, the key of each file will be cracked autonomously
+                -o path/to/output       -> the directory where the results and the results.csv manifest will be stored
+                [--encrypt]             -> cipher the files instead of deciphering them (requires -k)
+                [--concurrency n]       -> the amount of files processed at the same time (default: one per core)
+                [--cache path]          -> look the keys up in a cache file before cracking them, and store them there""";
+
+    private static final String PROFILE_USAGE = """
+            profile
+                -f path/to/corpus       -> the path to a text in the language to profile
+                -o path/to/profile      -> the path where the language profile will be stored""";
+
+    private static final String ANALYZE_USAGE = """
+            analyze
+                -c Caesar|Vernam|Vigenere -> the type of cipher
+                -f path/to/chunk        -> the ciphered text appended since the last run, or - to read the standard input
+                -s path/to/checkpoint   -> the state of the analysis, resumed if it exists and saved once the chunk is counted
+                [--max-key-length n]    -> the longest key length analysed, when the checkpoint is created (default 100)
+                [--profile path]        -> the language profile the plain text is compared to (default English)""";
+
+    private static final String SERVE_USAGE = """
+            serve
+                [-p port]               -> the local port to listen on (default 8080)
+                [--workers n]           -> the amount of jobs run at the same time (default: one per core)
+                [--queue n]             -> the amount of jobs that can wait for a worker (default 64)
+                [--cache path]          -> look the keys up in a cache file before cracking them, and store them there""";
+
+    /**
+     * The options that don't take a value.
+     */
+    private static final Set<String> SWITCHES = Set.of("--stream", "--encrypt", "--verbose", "--scalar", "--binary",
+            "--mapped");
+
+    /**
+     * The parent logger of the ciphers, kept so its configuration isn't garbage collected.
+     */
+    private static final Logger CIPHER_LOG = Logger.getLogger("cipher");
+
     public static void main(String[] args) {
 
         if (args.length < 1) {
-            System.out.println("encrypt|decrypt -c Caesar|Vernam -f path/to/plaintext [-k key] -o path/to/output");
+            System.out.println(USAGE);
             System.exit(1);
         }
 
+        Map<String, String> options = parseOptions(args, 1);
+        if (options != null) instrument(options);
+
         if (args[0].equals("encrypt")) {
-            if (args.length != 9 || !args[1].equalsIgnoreCase("-c")
-                    || !args[3].equalsIgnoreCase("-f")
-                    || !args[5].equalsIgnoreCase("-k")
-                    || !args[7].equalsIgnoreCase("-o")
-            ) {
-                System.out.println("""
-                        encrypt
-                            -c Caesar|Vernam        -> the type of cipher
-                            -f path/to/plaintext    -> the path to the text to cipher
-                            -k key                  -> the key used to cipher : an integer for Caesar, a string for Vernam
-                            -o path/to/output       -> the path where the ciphered text will be stored""");
+            if (options == null || !options.keySet().containsAll(List.of("-c", "-f", "-k", "-o"))) {
+                System.out.println(ENCRYPT_USAGE);
                 System.exit(1);
             }
-            encrypt(args[2], args[4], args[6], args[8]);
+
+            if (options.containsKey("--mapped")) options.put("--binary", "");
+
+            if (options.containsKey("--binary") && isStreamed(options)) {
+                System.out.println("A binary file can't be streamed : it starts with the length of the text.");
+                System.exit(1);
+            }
+
+            if (options.containsKey("--binary") && options.get("-c").equalsIgnoreCase("Vigenere")) {
+                System.out.println("The binary format only holds Caesar and Vernam ciphered texts.");
+                System.exit(1);
+            }
+
+            encrypt(options.get("-c"), options.get("-f"), options.get("-k"), options.get("-o"), options);
         } else if (args[0].equals("decrypt")) {
-            if (args.length < 7
-                    || !args[1].equalsIgnoreCase("-c")
-                    || !args[3].equalsIgnoreCase("-f")
-                    || (!args[5].equalsIgnoreCase("-k") && !args[5].equalsIgnoreCase("-o"))
-                    || (args[5].equalsIgnoreCase("-k") && !args[7].equalsIgnoreCase("-o"))) {
-                System.out.println("""
-                        decrypt
-                            -c Caesar|Vernam        -> the type of cipher
-                            -f path/to/plaintext    -> the path to the text to decipher
-                            [-k key]                -> the key used to decipher : an integer for Caesar, a string for Vernam
-                                                    -> if not provided, the key will be cracked autonomously
-                            -o path/to/output       -> the path where the deciphered text will be stored""");
+            if (options == null || !options.keySet().containsAll(List.of("-c", "-f", "-o"))) {
+                System.out.println(DECRYPT_USAGE);
+                System.exit(1);
+            }
+
+            String key = options.getOrDefault("-k", "");
+
+            if (isStreamed(options) && key.equals("")) {
+                System.out.println("A key is required to decipher a stream : cracking needs the whole text.");
+                System.exit(1);
+            }
+
+            if (options.containsKey("--cache") && (options.containsKey("--profile")
+                    || options.containsKey("--max-key-length") || options.containsKey("--confidence"))) {
+                System.out.println("The cache only holds keys cracked with the default settings.");
                 System.exit(1);
             }
 
-            String key = args[5].equalsIgnoreCase("-k") ? args[6] : "";
-            String output = key.equals("") ? args[6] : args[8];
+            if (options.containsKey("--confidence") && options.get("-c").equalsIgnoreCase("Vigenere")) {
+                System.out.println("Vigenere is cracked in a single pass over the text : --confidence doesn't apply.");
+                System.exit(1);
+            }
 
+            if (options.containsKey("--deadline") && options.containsKey("--confidence")) {
+                System.out.println("--deadline and --confidence are two ways to stop cracking early : pick one.");
+                System.exit(1);
+            }
 
-            decrypt(args[2], args[4], key, output);
+            decrypt(options.get("-c"), options.get("-f"), key, options.get("-o"), options);
+        } else if (args[0].equals("batch")) {
+            if (options == null || !options.keySet().containsAll(List.of("-c", "-f", "-o"))
+                    || (options.containsKey("--encrypt") && !options.containsKey("-k"))) {
+                System.out.println(BATCH_USAGE);
+                System.exit(1);
+            }
+
+            int concurrency = intOption(options, "--concurrency", Runtime.getRuntime().availableProcessors());
+
+            batch(options.get("-c"), options.get("-f"), options.getOrDefault("-k", ""), options.get("-o"),
+                    options.containsKey("--encrypt"), concurrency, options.get("--cache"));
+        } else if (args[0].equals("profile")) {
+            if (options == null || !options.keySet().containsAll(List.of("-f", "-o"))) {
+                System.out.println(PROFILE_USAGE);
+                System.exit(1);
+            }
+
+            profile(options.get("-f"), options.get("-o"));
+        } else if (args[0].equals("analyze")) {
+            if (options == null || !options.keySet().containsAll(List.of("-c", "-f", "-s"))) {
+                System.out.println(ANALYZE_USAGE);
+                System.exit(1);
+            }
+
+            analyze(options.get("-c"), options.get("-f"), options.get("-s"), options);
+        } else if (args[0].equals("serve")) {
+            if (options == null) {
+                System.out.println(SERVE_USAGE);
+                System.exit(1);
+            }
+
+            serve(intOption(options, "-p", 8080),
+                    intOption(options, "--workers", Runtime.getRuntime().availableProcessors()),
+                    intOption(options, "--queue", 64), options.get("--cache"));
         } else {
-            System.out.println("encrypt|decrypt -c Caesar|Vernam -f path/to/plaintext [-k key] -o path/to/output");
+            System.out.println(USAGE);
             System.exit(1);
         }
     }
 
     /**
-     * Ciphers an input file using the requested cipher and writes the result to a file
+     * Parses command-line options of the form {@code -option value}.
      * <p>
-     * N.B. All arguments are case-insensitive.
+     * Option names are case-insensitive and stored in lowercase. Options in {@link #SWITCHES} don't take a value and
+     * are stored with an empty one.
      *
-     * @param type   the cipher to be used : either Caesar or Vernam
-     * @param input  the path to the input file
-     * @param key    they used to cipher
-     * @param output the path to the output file
-     */
-    private static void encrypt(String type, String input, String key, String output) {
-
-        if (!(type.equalsIgnoreCase("Caesar") || type.equalsIgnoreCase("Vernam"))) {
-            System.out.println("""
-                    encrypt
-                        -c Caesar|Vernam        -> the type of cipher
-                        -f path/to/plaintext    -> the path to the text to cipher
-                        -k key                  -> the key used to cipher : an integer for Caesar, a string for Vernam
-                        -o path/to/output       -> the path where the ciphered text will be stored""");
-            System.exit(1);
+     * @param args the command-line arguments
+     * @param from the index of the first option in {@code args}
+     * @return a map of all options and their values, or null if the arguments are malformed
+     */
+    private static Map<String, String> parseOptions(String[] args, int from) {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = from; i < args.length; i++) {
+            String name = args[i].toLowerCase();
+            if (!name.startsWith("-")) return null;
+
+            if (SWITCHES.contains(name)) {
+                options.put(name, "");
+            } else {
+                if (i + 1 >= args.length) return null;
+                options.put(name, args[++i]);
+            }
         }
 
+        return options;
+    }
 
+    /**
+     * Reads a positive integer option, exiting if it isn't one.
+     *
+     * @param options      the parsed command-line options
+     * @param name         the name of the option
+     * @param defaultValue the value to use if the option isn't given
+     * @return the value of the option
+     */
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        if (!options.containsKey(name)) return defaultValue;
         try {
-            String text = Files.readString(Paths.get(input));
-            text = Preprocess.sanitizeToAlpha(text);
+            int value = Integer.parseInt(options.get(name));
+            if (value > 0) return value;
+        } catch (NumberFormatException ignored) {
+        }
+        System.out.println(name + " must be a positive numeral!");
+        System.exit(1);
+        return defaultValue;
+    }
 
-            Path outputPath = Paths.get(output);
+    /**
+     * Sets up the logging and the metrics asked for on the command line.
+     * <p>
+     * With {@code --verbose}, the progress of cracking is logged to the standard error. With {@code --metrics json},
+     * the metrics of every phase are printed to the standard error when the program exits. With {@code --scalar}, the
+     * SIMD kernels are disabled, and with {@code --key-length}, key lengths are ranked another way.
+     *
+     * @param options the parsed command-line options
+     */
+    private static void instrument(Map<String, String> options) {
+        // must be set before the ciphers are first used
+        if (options.containsKey("--scalar")) System.setProperty(Kernels.PROPERTY, "false");
+        if (options.containsKey("--key-length")) {
+            if (!options.get("--key-length").matches("(?i)ic|kasiski|combined")) {
+                System.out.println("--key-length only supports ic, kasiski or combined!");
+                System.exit(1);
+            }
+            System.setProperty(KeyLengthAnalyzer.METHOD_PROPERTY, options.get("--key-length"));
+        }
 
-            System.out.println(input + " as the input file");
-            System.out.println(key + " as the key");
+        if (options.containsKey("--verbose")) {
+            ConsoleHandler handler = new ConsoleHandler();
+            handler.setLevel(Level.FINE);
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return formatMessage(record) + System.lineSeparator();
+                }
+            });
+
+            CIPHER_LOG.setLevel(Level.FINE);
+            CIPHER_LOG.setUseParentHandlers(false);
+            CIPHER_LOG.addHandler(handler);
+            CIPHER_LOG.fine(Kernels.isVectorized() ? "Using the SIMD kernels" : "Using the scalar loops");
+        }
+
+        if (options.containsKey("--metrics")) {
+            if (!options.get("--metrics").equalsIgnoreCase("json")) {
+                System.out.println("--metrics only supports json!");
+                System.exit(1);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.println(Metrics.toJson())));
+        }
+    }
 
-            String cipheredText = "";
+    /**
+     * Reads an option that is a number between 0 and 1, exiting if it isn't one.
+     *
+     * @param options      the parsed command-line options
+     * @param name         the name of the option
+     * @param defaultValue the value to use if the option isn't given
+     * @return the value of the option
+     */
+    private static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        if (!options.containsKey(name)) return defaultValue;
+        try {
+            double value = Double.parseDouble(options.get(name));
+            if (value >= 0 && value <= 1) return value;
+        } catch (NumberFormatException ignored) {
+        }
+        System.out.println(name + " must be a number between 0 and 1!");
+        System.exit(1);
+        return defaultValue;
+    }
 
-            if (type.equalsIgnoreCase("Caesar")) {
-                System.out.println("Ciphering with Caesar");
+    /**
+     * Tells if a command should be run in streaming mode : either it was asked for, or the standard input or output
+     * is used.
+     *
+     * @param options the parsed command-line options
+     * @return true if the text should be processed chunk by chunk
+     */
+    private static boolean isStreamed(Map<String, String> options) {
+        return options.containsKey("--stream") || "-".equals(options.get("-f")) || "-".equals(options.get("-o"));
+    }
 
-                cipheredText = Caesar.cipher(text, Integer.parseInt(key));
+    /**
+     * Tells if a file must be memory-mapped : if asked to, or if it is too large to be loaded whole.
+     *
+     * @param options the parsed command-line options
+     * @param input   the path to the input file
+     * @return true if the file should be processed segment by segment, through {@link MappedCipher}
+     * @throws IOException if the size of the file couldn't be read
+     */
+    private static boolean isMapped(Map<String, String> options, String input) throws IOException {
+        return options.containsKey("--mapped") || Files.size(Paths.get(input)) > MappedCipher.SEGMENT_SIZE;
+    }
 
-            } else if (type.equalsIgnoreCase("Vernam")) {
-                System.out.println("Ciphering with Vernam");
-                cipheredText = Vernam.cipher(text, key.toCharArray());
-            }
+    /**
+     * Cracks the key of a ciphered text, on several threads if a pool is given.
+     *
+     * @param type         the cipher used : Caesar, Vernam or Vigenere
+     * @param text         the ciphered text
+     * @param maxKeyLength the longest key length to try, for Vernam and Vigenere
+     * @param pool         the pool the text is analysed on, or null to use the defaults of each cipher
+     * @param profile      the language of the plain text
+     * @return the key, or "" if its length couldn't be determined
+     */
+    private static String crackKey(String type, String text, int maxKeyLength, ForkJoinPool pool, Profile profile) {
+        if (type.equalsIgnoreCase("Caesar"))
+            return String.valueOf(pool == null ? Caesar.crackKey(text, profile) : Caesar.crackKey(text, pool, profile));
+        if (type.equalsIgnoreCase("Vigenere")) return new String(Vigenere.crackKey(text, maxKeyLength, profile));
+        return new String(pool == null
+                ? Vernam.crackKey(text, maxKeyLength, profile)
+                : Vernam.crackKey(text, maxKeyLength, pool, profile));
+    }
 
-            Files.writeString(outputPath, cipheredText);
-            System.out.println("The ciphered text is now saved at : " + output);
+    /**
+     * Ciphers an input file using the requested cipher and writes the result to a file
+     * <p>
+     * N.B. All arguments are case-insensitive.
+     *
+     * @param type    the cipher to be used : Caesar, Vernam or Vigenere
+     * @param input   the path to the input file, or "-" for the standard input
+     * @param key     they used to cipher
+     * @param output  the path to the output file, or "-" for the standard output
+     * @param options the other command-line options
+     */
+    private static void encrypt(String type, String input, String key, String output, Map<String, String> options) {
+
+        if (!Jobs.isSupported(type)) {
+            System.out.println(ENCRYPT_USAGE);
+            System.exit(1);
+        }
+
+        boolean streamed = isStreamed(options);
+        int threads = intOption(options, "--threads", 1);
+
+        // when the result goes to the standard output, messages must not be mixed with it
+        PrintStream log = output.equals("-") ? System.err : System.out;
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+
+        try {
+            log.println(input + " as the input file");
+            log.println(key + " as the key");
+
+            if (options.containsKey("--binary") && isMapped(options, input)) {
+                log.println("Ciphering with " + type + " (mapped)");
+                long length = MappedCipher.encrypt(Paths.get(input), Paths.get(output), type, key);
+                log.println(length + " letters ciphered");
+            } else if (options.containsKey("--binary")) {
+                log.println("Ciphering with " + type + " (binary)");
+                long length = BinaryCipher.encrypt(Paths.get(input), Paths.get(output), type, key);
+                log.println(length + " letters ciphered");
+            } else if (streamed) {
+                log.println("Ciphering with " + type + " (streamed)");
+                try (Reader in = StreamCipher.openReader(input); Writer out = StreamCipher.openWriter(output)) {
+                    StreamCipher.encrypt(in, out, type, key);
+                }
+            } else {
+                String text;
+                try (Metrics.Timer timer = Metrics.time(Phase.READ)) {
+                    text = Files.readString(Paths.get(input));
+                    timer.bytes(text.length());
+                }
+                text = Preprocess.sanitizeToAlpha(text);
+
+                Path outputPath = Paths.get(output);
+
+                String cipheredText = "";
+
+                if (type.equalsIgnoreCase("Caesar")) {
+                    log.println("Ciphering with Caesar");
+
+                    cipheredText = pool == null
+                            ? Caesar.cipher(text, Integer.parseInt(key))
+                            : Caesar.cipher(text, Integer.parseInt(key), pool);
+
+                } else if (type.equalsIgnoreCase("Vernam")) {
+                    log.println("Ciphering with Vernam");
+                    cipheredText = pool == null
+                            ? Vernam.cipher(text, key.toCharArray())
+                            : Vernam.cipher(text, key.toCharArray(), pool);
+                } else if (type.equalsIgnoreCase("Vigenere")) {
+                    log.println("Ciphering with Vigenere");
+                    cipheredText = Vigenere.cipher(text, key.toLowerCase().toCharArray());
+                }
+
+                try (Metrics.Timer timer = Metrics.time(Phase.WRITE)) {
+                    timer.bytes(cipheredText.length());
+                    Files.writeString(outputPath, cipheredText);
+                }
+            }
+            Metrics.key(key);
+            log.println("The ciphered text is now saved at : " + output);
         } catch (NumberFormatException e) {
             System.err.println("Caesar key must be a numeral!");
         } catch (IOException e) {
             System.err.println("Couldn't access file : " + e.getMessage());
         } catch (Exception e) {
             System.err.println("An error occurred : " + e.getMessage());
+        } finally {
+            if (pool != null) pool.shutdown();
         }
     }
 
@@ -119,55 +482,310 @@ public class Main {
      * <p>
      * N.B. All arguments are case-insensitive.
      *
-     * @param type   the type of cipher used
-     * @param input  the path to the input file
-     * @param key    the key used to cipher, or "" if not provided
-     * @param output the path to the output file
-     */
-    private static void decrypt(String type, String input, String key, String output) {
-
-        if (!(type.equalsIgnoreCase("Caesar") || type.equalsIgnoreCase("Vernam"))) {
-            System.out.println("""
-                    decrypt
-                        -c Caesar|Vernam        -> the type of cipher
-                        -f path/to/plaintext    -> the path to the text to decipher
-                        [-k key]                -> the key used to decipher : an integer for Caesar, a string for Vernam
-                                                -> if not provided, the key will be cracked autonomously
-                        -o path/to/output       -> the path where the deciphered text will be stored""");
+     * @param type    the type of cipher used
+     * @param input   the path to the input file, or "-" for the standard input
+     * @param key     the key used to cipher, or "" if not provided
+     * @param output  the path to the output file, or "-" for the standard output
+     * @param options the other command-line options
+     */
+    private static void decrypt(String type, String input, String key, String output, Map<String, String> options) {
+
+        if (!Jobs.isSupported(type)) {
+            System.out.println(DECRYPT_USAGE);
             System.exit(1);
         }
 
+        boolean streamed = isStreamed(options);
+        int maxKeyLength = intOption(options, "--max-key-length", KeyLengthAnalyzer.DEFAULT_MAX_PERIOD);
+        int threads = intOption(options, "--threads", 1);
+        boolean progressive = options.containsKey("--confidence");
+        double confidence = doubleOption(options, "--confidence", Progressive.DEFAULT_CONFIDENCE);
+        Duration budget = options.containsKey("--deadline")
+                ? Duration.ofMillis(intOption(options, "--deadline", 1))
+                : null;
+
+        // when the result goes to the standard output, messages must not be mixed with it
+        PrintStream log = output.equals("-") ? System.err : System.out;
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+
         try {
-            String text = new String(Files.readAllBytes(Paths.get(input)));
+            Profile profile = options.containsKey("--profile")
+                    ? Profile.load(Paths.get(options.get("--profile")))
+                    : Profile.ENGLISH;
+
+            log.println(input + " as the input file");
+            log.println(key.equals("") ? "With key deduced" : "With provided key : " + key);
+
+            if (!input.equals("-") && !output.equals("-") && BinaryCipher.isBinary(Paths.get(input))) {
+                boolean mapped = isMapped(options, input);
+                BinaryCipher.Outcome outcome = mapped
+                        ? MappedCipher.decrypt(Paths.get(input), Paths.get(output), key, maxKeyLength, budget, profile)
+                        : BinaryCipher.decrypt(Paths.get(input), Paths.get(output), key, maxKeyLength, profile);
+                log.println("Deciphered " + outcome.type() + (mapped ? " (mapped)" : " (binary)"));
+                log.println(outcome.key().equals("") ? "The key couldn't be cracked" : "Key : " + outcome.key());
+                key = outcome.key();
+            } else if (streamed) {
+                log.println("Deciphering " + type + " (streamed)");
+                try (Reader in = StreamCipher.openReader(input); Writer out = StreamCipher.openWriter(output)) {
+                    StreamCipher.decrypt(in, out, type, key);
+                }
+            } else {
+                String text;
+                try (Metrics.Timer timer = Metrics.time(Phase.READ)) {
+                    text = new String(Files.readAllBytes(Paths.get(input)));
+                    timer.bytes(text.length());
+                }
+
+                Path outputPath = Paths.get(output);
+
+                String decipheredText = "";
+
+                if (key.equals("") && options.containsKey("--cache")) {
+                    try (CrackCache cache = new CrackCache(CrackCache.DEFAULT_CAPACITY,
+                            Paths.get(options.get("--cache")))) {
+                        Jobs.Outcome outcome = Jobs.decrypt(type, text, "", cache, budget);
+                        log.println((cache.hits() > 0 ? "Key found in the cache : "
+                                : outcome.partial() ? "Deadline reached, best key so far : " : "Key cracked : ")
+                                + outcome.key());
+                        key = outcome.key();
+                        decipheredText = outcome.text();
+                    }
+                } else if (progressive && key.equals("")) {
+                    Progressive.Result result = type.equalsIgnoreCase("Caesar")
+                            ? Progressive.crackCaesar(text, confidence, profile)
+                            : Progressive.crackVernam(text, maxKeyLength, confidence, profile);
+
+                    log.printf("Key found with a confidence of %.3f after analysing %d of %d characters (%.1f%%)%n",
+                            result.confidence(), result.analysed(), result.total(), 100 * result.fraction());
+                    key = result.key();
+                    if (key.equals("")) decipheredText = "Undecipherable.";
+                } else if (budget != null && key.equals("")) {
+                    ForkJoinPool searchPool = pool == null ? ForkJoinPool.commonPool() : pool;
+                    Anytime.Result result;
+                    if (type.equalsIgnoreCase("Caesar")) result = Anytime.crackCaesar(text, budget, profile);
+                    else if (type.equalsIgnoreCase("Vigenere"))
+                        result = Anytime.crackVigenere(text, maxKeyLength, budget, searchPool, profile);
+                    else result = Anytime.crackVernam(text, maxKeyLength, budget, searchPool, profile);
+
+                    log.println((result.partial() ? "Deadline reached, best key so far : " : "Key cracked : ")
+                            + result.key());
+                    key = result.key();
+                    if (key.equals("")) decipheredText = "Undecipherable.";
+                } else if (key.equals("")) {
+                    key = crackKey(type, text, maxKeyLength, pool, profile);
+                    if (key.equals("")) decipheredText = "Undecipherable.";
+                    else log.println("Key cracked : " + key);
+                }
+
+                if (decipheredText.equals("Undecipherable.")) {
+                    log.println("The key couldn't be cracked");
+                } else if (!decipheredText.equals("")) {
+                    // already deciphered with the key found in the cache
+                } else if (type.equalsIgnoreCase("Caesar")) {
+                    log.println("Deciphering Caesar");
+                    decipheredText = pool == null
+                            ? Caesar.decipher(text, Integer.parseInt(key))
+                            : Caesar.decipher(text, Integer.parseInt(key), pool);
+                } else if (type.equalsIgnoreCase("Vernam")) {
+                    log.println("Deciphering Vernam");
+                    decipheredText = pool == null
+                            ? Vernam.decipher(text, key.toCharArray())
+                            : Vernam.decipher(text, key.toCharArray(), pool);
+                } else if (type.equalsIgnoreCase("Vigenere")) {
+                    log.println("Deciphering Vigenere");
+                    decipheredText = Vigenere.decipher(text, key.toLowerCase().toCharArray());
+                }
+
+                try (Metrics.Timer timer = Metrics.time(Phase.WRITE)) {
+                    timer.bytes(decipheredText.length());
+                    Files.writeString(outputPath, decipheredText);
+                }
+            }
+            Metrics.key(key);
+            log.println("The deciphered text is now saved at : " + output);
+        } catch (NumberFormatException e) {
+            System.err.println("Caesar key must be a numeral!");
+        } catch (IOException e) {
+            System.err.println("Couldn't access file : " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("An error occurred : " + e.getMessage());
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
 
-            Path outputPath = Paths.get(output);
+    }
 
-            System.out.println(input + " as the input file");
-            System.out.println(key.equals("") ? "With key deduced" : "With provided key : " + key);
+    /**
+     * Ciphers or deciphers every file of a directory or a manifest, and writes a results manifest.
+     * <p>
+     * A file that couldn't be processed is reported without stopping the batch.
+     *
+     * @param type        the cipher to be used : Caesar, Vernam or Vigenere
+     * @param input       the path to a directory or a manifest
+     * @param key         the key to use, or "" to crack the key of each file
+     * @param output      the path to the output directory
+     * @param encrypt     true to cipher the files, false to decipher them
+     * @param concurrency the amount of files processed at the same time
+     * @param cachePath   the path to the cache file of cracked keys, or null to only cache them in memory
+     */
+    private static void batch(String type, String input, String key, String output, boolean encrypt,
+                              int concurrency, String cachePath) {
 
-            String decipheredText = "";
+        if (!Jobs.isSupported(type)) {
+            System.out.println(BATCH_USAGE);
+            System.exit(1);
+        }
 
-            if (type.equalsIgnoreCase("Caesar")) {
-                System.out.println("Deciphering Caesar");
+        try (CrackCache cache = openCache(cachePath)) {
+            List<Path> files = Batch.listInputs(Paths.get(input));
+            System.out.println(files.size() + " files to " + (encrypt ? "cipher" : "decipher") + " with " + type);
+
+            long start = System.nanoTime();
+            List<Batch.Result> results = Batch.run(files, Paths.get(output), type, encrypt, key, concurrency,
+                    cache);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
 
-                decipheredText = key.equals("") ? Caesar.decipher(text) : Caesar.decipher(text, Integer.parseInt(key));
+            Path manifest = Paths.get(output, Batch.RESULTS);
+            Batch.writeResults(results, manifest);
 
-            } else if (type.equalsIgnoreCase("Vernam")) {
-                System.out.println("Deciphering Vernam");
-                decipheredText = key.equals("") ? Vernam.decipher(text) : Vernam.decipher(text, key.toCharArray());
+            long failed = results.stream().filter(result -> result.error() != null).count();
+            for (Batch.Result result : results) {
+                if (result.error() != null) System.err.println(result.file() + " : " + result.error());
             }
 
-            Files.writeString(outputPath, decipheredText);
-            System.out.println("The deciphered text is now saved at : " + output);
-        } catch (NumberFormatException e) {
-            System.err.println("Caesar key must be a numeral!");
+            System.out.println((results.size() - failed) + " files processed, " + failed + " failed, in " + elapsed
+                    + " ms");
+            if (!encrypt && key.equals(""))
+                System.out.println("Cache : " + cache.hits() + " hits, " + cache.misses() + " misses");
+            System.out.println("The results are now saved at : " + manifest);
+        } catch (IOException e) {
+            System.err.println("Couldn't access file : " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("An error occurred : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Trains a language profile on a corpus and saves it.
+     *
+     * @param input  the path to the corpus
+     * @param output the path to the profile
+     */
+    private static void profile(String input, String output) {
+        try {
+            String text = Preprocess.sanitizeToAlpha(Files.readString(Paths.get(input)));
+            System.out.println(input + " as the corpus (" + text.length() + " letters)");
+
+            Profile.train(text).save(Paths.get(output));
+            System.out.println("The language profile is now saved at : " + output);
         } catch (IOException e) {
             System.err.println("Couldn't access file : " + e.getMessage());
         } catch (Exception e) {
             System.err.println("An error occurred : " + e.getMessage());
         }
+    }
+
+    /**
+     * Counts a chunk of a growing ciphered text into a checkpointed analysis, and prints the key found so far.
+     * <p>
+     * Only the chunk is read : the rest of the text is summed up by the checkpoint, so each run costs the same however
+     * long the text grew.
+     *
+     * @param type       the cipher used : Caesar, Vernam or Vigenere
+     * @param input      the path to the chunk, or "-" for the standard input
+     * @param checkpoint the path to the checkpoint
+     * @param options    the other command-line options
+     */
+    private static void analyze(String type, String input, String checkpoint, Map<String, String> options) {
+
+        if (!Jobs.isSupported(type)) {
+            System.out.println(ANALYZE_USAGE);
+            System.exit(1);
+        }
+
+        int maxKeyLength = intOption(options, "--max-key-length", IncrementalAnalyzer.DEFAULT_MAX_PERIOD);
+
+        try {
+            Profile profile = options.containsKey("--profile")
+                    ? Profile.load(Paths.get(options.get("--profile")))
+                    : Profile.ENGLISH;
+
+            Path state = Paths.get(checkpoint);
+            IncrementalAnalyzer analyzer = Files.exists(state)
+                    ? IncrementalAnalyzer.load(state)
+                    : new IncrementalAnalyzer(maxKeyLength);
+
+            String chunk;
+            try (Metrics.Timer timer = Metrics.time(Phase.READ)) {
+                chunk = input.equals("-")
+                        ? new String(System.in.readAllBytes(), StandardCharsets.UTF_8)
+                        : Files.readString(Paths.get(input));
+                timer.bytes(chunk.length());
+            }
+
+            analyzer.append(chunk).save(state);
+            System.out.println(chunk.length() + " characters appended, " + analyzer.length() + " analysed in total");
 
+            if (type.equalsIgnoreCase("Caesar")) {
+                System.out.println("Key : " + analyzer.rankCaesar(profile).get(0).key());
+                return;
+            }
+
+            List<Candidate> lengths = analyzer.rankKeyLengths(profile.indexOfCoincidence());
+            int keyLength = KeyLengthAnalyzer.best(lengths);
+            if (keyLength == 0) {
+                System.out.println("No key length fits the text yet");
+                return;
+            }
+
+            System.out.println("Most likely key lengths : " + lengths.stream().limit(5).map(Candidate::key).toList());
+            char[] key = type.equalsIgnoreCase("Vigenere")
+                    ? analyzer.solveVigenere(keyLength, profile)
+                    : analyzer.solveVernam(keyLength, profile);
+            System.out.println("Key : " + new String(key));
+        } catch (IOException e) {
+            System.err.println("Couldn't access file : " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("An error occurred : " + e.getMessage());
+        }
     }
 
+    /**
+     * Runs a local server taking cipher jobs until the process is stopped.
+     *
+     * @param port      the port to listen on
+     * @param workers   the amount of jobs run at the same time
+     * @param queue     the amount of jobs that can wait for a worker
+     * @param cachePath the path to the cache file of cracked keys, or null to only cache them in memory
+     */
+    private static void serve(int port, int workers, int queue, String cachePath) {
+        try {
+            CrackCache cache = openCache(cachePath);
+            Server server = new Server(port, workers, queue, cache);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop(1);
+                try {
+                    cache.close();
+                } catch (IOException ignored) {
+                }
+            }));
+            server.start();
+            System.out.println("Listening on http://localhost:" + server.port() + " with " + workers + " workers");
+        } catch (IOException e) {
+            System.err.println("Couldn't listen on port " + port + " : " + e.getMessage());
+        }
+    }
 
+    /**
+     * Opens the cache of cracked keys.
+     *
+     * @param path the path to the cache file, or null to only cache the keys in memory
+     * @return the cache
+     * @throws IOException if the cache file couldn't be read
+     */
+    private static CrackCache openCache(String path) throws IOException {
+        return path == null
+                ? new CrackCache(CrackCache.DEFAULT_CAPACITY)
+                : new CrackCache(CrackCache.DEFAULT_CAPACITY, Paths.get(path));
+    }
 }
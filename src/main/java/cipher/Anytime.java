@@ -0,0 +1,240 @@
+package cipher;
+
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Cracks keys within a time budget, always holding the best key found so far.
+ * <p>
+ * A key is first cracked from a sample of the text : the first {@link #SAMPLE} characters. This is quick whatever the
+ * length of the text, and gives a complete key to fall back on. The work on the whole text is then done from the most
+ * to the least promising, while there is time left :
+ * <ul>
+ *     <li>key lengths are scored on the whole text in the order the sample ranked them, for at most half of the
+ *     remaining budget</li>
+ *     <li>if a better key length is found, the key is cracked again from the sample with that length</li>
+ *     <li>each column of the key is then solved again on the whole text, one after the other</li>
+ * </ul>
+ * Once the budget runs out, the search stops between two steps and the best key so far is returned, flagged as
+ * partial.
+ * <p>
+ * N.B. : the budget is checked between steps, and while a key length is scored, so it can be exceeded by the time it
+ * takes to solve a column on the whole text or to crack the sample.
+ */
+public class Anytime {
+
+    /**
+     * The amount of characters the first key is cracked from.
+     */
+    public static final int SAMPLE = 1 << 16;
+
+    /**
+     * A key cracked within a time budget.
+     *
+     * @param key        the best key found : the shift for Caesar, the characters of the key for Vernam and Vigenere,
+     *                   "" if none was found
+     * @param score      the chi-square of the deciphered sample against the language, {@link Double#MAX_VALUE} if
+     *                   no key was found
+     * @param partial    true if the budget ran out before the whole text was analysed
+     * @param keyLengths the key lengths scored on the whole text, from the most to the least likely, or on the sample
+     *                   if none was, empty for Caesar
+     */
+    public record Result(String key, double score, boolean partial, List<Integer> keyLengths) {
+    }
+
+    /**
+     * Cracks the key of a text ciphered using the Caesar cipher within a time budget.
+     * <p>
+     * The letters are counted {@link #SAMPLE} characters at a time, and the key is ranked on what was counted when the
+     * budget runs out.
+     *
+     * @param text    the ciphered text
+     * @param budget  how long the cracking may take
+     * @param profile the language of the plain text
+     * @return the best key found
+     */
+    public static Result crackCaesar(CharSequence text, Duration budget, Profile profile) {
+        long deadline = deadline(budget);
+        int total = text.length();
+        Histogram histogram = new Histogram();
+        int counted = 0;
+
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_SEARCH)) {
+            while (counted < total && (counted == 0 || !expired(deadline))) {
+                int end = (int) Math.min(total, (long) counted + SAMPLE);
+                histogram.count(text, counted, end);
+                counted = end;
+            }
+            timer.bytes(counted);
+        }
+
+        int key = Caesar.crackKey(text, histogram, profile);
+        return new Result(String.valueOf(key), histogram.chiSquare(profile.frequencies(), -key), counted < total,
+                List.of());
+    }
+
+    /**
+     * Cracks the key of a text ciphered using the Vernam cipher within a time budget.
+     *
+     * @param text         the ciphered text
+     * @param maxKeyLength the longest key length to try
+     * @param budget       how long the cracking may take
+     * @param pool         the pool the key lengths are scored on
+     * @param profile      the language of the plain text
+     * @return the best key found
+     */
+    public static Result crackVernam(CharSequence text, int maxKeyLength, Duration budget, ForkJoinPool pool,
+                                     Profile profile) {
+        return crack(text, maxKeyLength, budget, pool, profile, (column, keyLength) -> {
+            List<Candidate> candidates = Vernam.crackColumn(text, column, keyLength, profile);
+            return candidates.isEmpty() ? 0 : (char) candidates.get(0).key();
+        }, (sample, keyLength) -> Vernam.solveKey(sample, keyLength, profile), Vernam::decipher);
+    }
+
+    /**
+     * Cracks the key of a text ciphered using the Vigenère cipher within a time budget.
+     *
+     * @param text         the ciphered text
+     * @param maxKeyLength the longest key length to try
+     * @param budget       how long the cracking may take
+     * @param pool         the pool the key lengths are scored on
+     * @param profile      the language of the plain text
+     * @return the best key found
+     */
+    public static Result crackVigenere(CharSequence text, int maxKeyLength, Duration budget, ForkJoinPool pool,
+                                       Profile profile) {
+        return crack(text, maxKeyLength, budget, pool, profile, (column, keyLength) -> {
+            List<Candidate> candidates = Vigenere.crackColumn(text, column, keyLength, profile);
+            return (char) ('a' + candidates.get(0).key());
+        }, (sample, keyLength) -> Vigenere.solveKey(sample, keyLength, profile), Vigenere::decipher);
+    }
+
+    /**
+     * Solves one column of a key on the whole text.
+     */
+    private interface ColumnSolver {
+        char solve(int column, int keyLength);
+    }
+
+    private static Result crack(CharSequence text, int maxKeyLength, Duration budget, ForkJoinPool pool,
+                                Profile profile, ColumnSolver solver, BiFunction<String, Integer, char[]> sampleSolver,
+                                BiFunction<String, char[], String> decipher) {
+        long deadline = deadline(budget);
+        double expectedIC = profile.indexOfCoincidence();
+        String sample = text.subSequence(0, Math.min(text.length(), SAMPLE)).toString();
+
+        // the key cracked from the sample is the fallback if there is no time for anything else
+        List<Candidate> sampled = KeyLengthAnalyzer.rank(sample, maxKeyLength, pool, expectedIC);
+        int keyLength = KeyLengthAnalyzer.best(sampled);
+        char[] key = sampleSolver.apply(sample, keyLength);
+
+        if (sample.length() == text.length()) return result(sample, key, false, sampled, decipher, profile);
+        if (expired(deadline)) return result(sample, key, true, sampled, decipher, profile);
+
+        // the key lengths the sample found the most likely are scored first, each after its divisors, as a multiple
+        // of the key length is only picked if none of its divisors fits
+        int periods = Math.min(maxKeyLength, text.length() / KeyLengthAnalyzer.MIN_COLUMN_LENGTH);
+        int[] order = new int[periods];
+        boolean[] queued = new boolean[periods + 1];
+        int queuedCount = 0;
+        for (Candidate candidate : sampled) {
+            for (int divisor = 1; divisor <= candidate.key(); divisor++) {
+                if (candidate.key() % divisor == 0 && !queued[divisor]) {
+                    order[queuedCount++] = divisor;
+                    queued[divisor] = true;
+                }
+            }
+        }
+        for (int period = 1; period <= periods; period++) {
+            if (!queued[period]) order[queuedCount++] = period;
+        }
+
+        long now = System.nanoTime();
+        List<Candidate> ranked = scoreLengths(text, order, pool, expectedIC, now + (deadline - now) / 2);
+        boolean partial = ranked.size() < periods;
+        if (ranked.isEmpty()) return result(sample, key, true, sampled, decipher, profile);
+
+        int length = KeyLengthAnalyzer.best(ranked);
+        if (length != keyLength) {
+            keyLength = length;
+            key = sampleSolver.apply(sample, keyLength);
+        }
+
+        // then each column is solved again on the whole text, the sample's letter standing in until it is
+        for (int i = 0; i < keyLength; i++) {
+            if (expired(deadline)) {
+                partial = true;
+                break;
+            }
+            key[i] = solver.solve(i, keyLength);
+        }
+
+        return result(sample, key, partial, ranked, decipher, profile);
+    }
+
+    /**
+     * Scores key lengths on the whole text in a given order, on every thread of a pool, until a deadline.
+     *
+     * @return the scored key lengths, from the most to the least likely
+     */
+    private static List<Candidate> scoreLengths(CharSequence text, int[] order, ForkJoinPool pool, double expectedIC,
+                                                long deadline) {
+        double[] scores = new double[order.length];
+        Arrays.fill(scores, Double.NaN);
+        AtomicInteger next = new AtomicInteger();
+
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_LENGTH)) {
+            timer.bytes(text.length());
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < pool.getParallelism(); t++) {
+                tasks.add(pool.submit(() -> {
+                    int[] counts = new int[Character.MAX_VALUE + 1];
+                    int i;
+                    while (!expired(deadline) && (i = next.getAndIncrement()) < order.length) {
+                        // a key length cut short by the deadline stays NaN
+                        scores[i] = Math.abs(KeyLengthAnalyzer.averageIC(text, order[i], counts, deadline)
+                                - expectedIC);
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+
+        List<Candidate> ranked = new ArrayList<>();
+        for (int i = 0; i < order.length; i++) {
+            if (!Double.isNaN(scores[i])) ranked.add(new Candidate(order[i], scores[i]));
+        }
+        Metrics.addCandidates(ranked.size());
+
+        ranked.sort(null);
+        return ranked;
+    }
+
+    private static Result result(String sample, char[] key, boolean partial, List<Candidate> ranked,
+                                 BiFunction<String, char[], String> decipher, Profile profile) {
+        List<Integer> keyLengths = ranked.stream().map(Candidate::key).toList();
+        if (key.length == 0) return new Result("", Double.MAX_VALUE, partial, keyLengths);
+
+        double score = Util.chiSquare(new Histogram().count(decipher.apply(sample, key)), profile);
+        return new Result(new String(key), score, partial, keyLengths);
+    }
+
+    private static long deadline(Duration budget) {
+        return System.nanoTime() + budget.toNanos();
+    }
+
+    private static boolean expired(long deadline) {
+        return System.nanoTime() - deadline >= 0;
+    }
+}
@@ -0,0 +1,48 @@
+package cipher;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read-only view of the remaining bytes of a buffer as a text, each byte being a character between 0 and 255.
+ * <p>
+ * This is {@link ByteText} for buffers that aren't backed by an array, such as memory-mapped files : the bytes are
+ * read where they are, outside the heap.
+ */
+public final class BufferText implements CharSequence {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a view of the bytes between the position and the limit of a buffer.
+     *
+     * @param buffer the buffer, which is neither copied nor moved
+     */
+    public BufferText(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public int length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end)
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of " + length() + " bytes");
+        return new BufferText(buffer.slice(start, end - start));
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length()];
+        buffer.get(0, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
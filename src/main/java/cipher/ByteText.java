@@ -0,0 +1,63 @@
+package cipher;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read-only view of a range of bytes as a text, each byte being a character between 0 and 255.
+ * <p>
+ * This lets the analyses that work on a {@link CharSequence}, such as {@link KeyLengthAnalyzer} or
+ * {@link Vernam#crackKey(CharSequence, int)}, run directly on raw bytes, without decoding or copying them.
+ */
+public final class ByteText implements CharSequence {
+
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    /**
+     * Creates a view of every byte of an array.
+     *
+     * @param bytes the bytes, which are not copied
+     */
+    public ByteText(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Creates a view of a range of an array.
+     *
+     * @param bytes  the bytes, which are not copied
+     * @param offset the index of the first byte of the range
+     * @param length the amount of bytes in the range
+     */
+    public ByteText(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length)
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + (offset + length) + ") out of "
+                    + bytes.length + " bytes");
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes[offset + index] & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of " + length + " bytes");
+        return new ByteText(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -1,6 +1,18 @@
 package cipher;
 
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
 public class Caesar {
+
+    private static final Logger LOG = Logger.getLogger(Caesar.class.getName());
+
     /**
      * Ciphers a normalized lowercase plain text using the Caesar cipher.
      * <p>
@@ -15,6 +27,19 @@ public class Caesar {
      * @return the ciphered string
      */
     public static String cipher(String text, int key) {
+        try (Metrics.Timer timer = Metrics.time(Phase.APPLY_KEY)) {
+            timer.bytes(text.length());
+            return shift(text, key);
+        }
+    }
+
+    private static String shift(String text, int key) {
+        if (Kernels.VECTOR) {
+            char[] out = new char[text.length()];
+            VectorKernels.shift(text.toCharArray(), out, 0, out.length, Math.floorMod(key, 26));
+            return new String(out);
+        }
+
         StringBuilder sb = new StringBuilder();
 
         for (int i = 0; i < text.length(); i++) {
@@ -38,6 +63,110 @@ public class Caesar {
         return sb.toString();
     }
 
+    /**
+     * Ciphers a normalized lowercase plain text using the Caesar cipher, on several threads.
+     * <p>
+     * The text is split in chunks ciphered in parallel into a shared buffer. The result is the same as
+     * {@link #cipher(String, int)}.
+     *
+     * @param text the text to cipher
+     * @param key  the key used for ciphering
+     * @param pool the pool the chunks are ciphered on
+     * @return the ciphered string
+     */
+    public static String cipher(String text, int key, ForkJoinPool pool) {
+        try (Metrics.Timer timer = Metrics.time(Phase.APPLY_KEY)) {
+            timer.bytes(text.length());
+            return shift(text, key, pool);
+        }
+    }
+
+    private static String shift(String text, int key, ForkJoinPool pool) {
+        byte[] table = shiftTable(key);
+        char[] out = new char[text.length()];
+
+        if (Kernels.VECTOR) {
+            char[] in = text.toCharArray();
+            Chunks.forEach(pool, in.length, 1, (from, to) -> VectorKernels.shift(in, out, from, to, table[0] - 'a'));
+            return new String(out);
+        }
+
+        Chunks.forEach(pool, text.length(), 1, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int letter = text.charAt(i) - 'a';
+                // characters that aren't letters are shifted the same way cipher(String, int) does
+                out[i] = letter >= 0 && letter < 26
+                        ? (char) table[letter]
+                        : (char) (Math.floorMod(letter + key, 26) + 'a');
+            }
+        });
+
+        return new String(out);
+    }
+
+    /**
+     * Builds the substitution table of the Caesar cipher for a given key.
+     * <p>
+     * The ith entry is the ASCII code of the ith letter of the alphabet once shifted by {@code key}. The table is
+     * meant to be built once and given to {@link #cipher(byte[], int, int, byte[])} for every buffer.
+     * To build the table used to decipher, just give it {@code -key}.
+     *
+     * @param key the key used for ciphering
+     * @return a table of 26 shifted letters
+     */
+    public static byte[] shiftTable(int key) {
+        byte[] table = new byte[26];
+        for (int i = 0; i < 26; i++) {
+            table[i] = (byte) (Math.floorMod(i + key, 26) + 'a');
+        }
+        return table;
+    }
+
+    /**
+     * Ciphers in place a range of sanitized ASCII text using the Caesar cipher.
+     * <p>
+     * This does the same as {@link #cipher(String, int)}, without allocating anything : each letter is replaced by
+     * its entry in {@code table}.
+     * <p>
+     * N.B. : The bytes are assumed to be lowercase letters, as produced by {@code proc.Preprocess} : any other byte
+     * throws an {@link ArrayIndexOutOfBoundsException}, with or without the SIMD kernels.
+     *
+     * @param buf   the buffer holding the text
+     * @param off   the index of the first byte to cipher
+     * @param len   the amount of bytes to cipher
+     * @param table the table built by {@link #shiftTable(int)}
+     */
+    public static void cipher(byte[] buf, int off, int len, byte[] table) {
+        if (Kernels.VECTOR) {
+            VectorKernels.shift(buf, off, len, table);
+            return;
+        }
+
+        for (int i = off, end = off + len; i < end; i++) {
+            buf[i] = table[buf[i] - 'a'];
+        }
+    }
+
+    /**
+     * Ciphers in place the remaining bytes of a buffer using the Caesar cipher.
+     * <p>
+     * The bytes between the position and the limit of {@code buf} are ciphered. Its position is left untouched.
+     *
+     * @param buf   the buffer holding the text
+     * @param table the table built by {@link #shiftTable(int)}
+     * @see #cipher(byte[], int, int, byte[])
+     */
+    public static void cipher(ByteBuffer buf, byte[] table) {
+        if (buf.hasArray()) {
+            cipher(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), table);
+            return;
+        }
+
+        for (int i = buf.position(), end = buf.limit(); i < end; i++) {
+            buf.put(i, table[buf.get(i) - 'a']);
+        }
+    }
+
     /**
      * Deciphers a text ciphered with the Caesar cipher using a provided key.
      * <p>
@@ -51,6 +180,19 @@ public class Caesar {
         return cipher(text, -key);
     }
 
+    /**
+     * Deciphers a text ciphered with the Caesar cipher using a provided key, on several threads.
+     *
+     * @param text the text to decipher
+     * @param key  the key used to cipher
+     * @param pool the pool the text is deciphered on
+     * @return the plain text
+     * @see #cipher(String, int, ForkJoinPool)
+     */
+    public static String decipher(String text, int key, ForkJoinPool pool) {
+        return cipher(text, -key, pool);
+    }
+
     /**
      * Deciphers a text ciphered using the Caesar cipher.
      * <p>
@@ -64,19 +206,156 @@ public class Caesar {
      * @return the plain text
      */
     public static String decipher(String text) {
-        double chiSq = Double.MAX_VALUE;
-        int bestOffset = 0;
-
-        for (int i = 0; i < 26; i++) { //NOTE : isn't this just brute-forcing ??
-            String text2 = cipher(text, i);
-            double chiSqSave = Util.chiSquare(text2);
-            if (chiSqSave < chiSq) {
-                chiSq = chiSqSave;
-                bestOffset = i;
-            }
+        return decipher(text, Profile.ENGLISH);
+    }
+
+    /**
+     * Deciphers a text ciphered using the Caesar cipher, comparing it to the letter frequencies of a given language.
+     *
+     * @param text    the text to decipher
+     * @param profile the language of the plain text
+     * @return the plain text
+     * @see #decipher(String)
+     */
+    public static String decipher(String text, Profile profile) {
+        int key = crackKey(text, profile);
+        LOG.fine("[CAESAR] Detected key " + key);
+        LOG.fine("[CAESAR] Applying key");
+        return decipher(text, key);
+    }
+
+    /**
+     * Deciphers a text ciphered using the Caesar cipher, on several threads.
+     * <p>
+     * The letters of the text are counted in parallel chunks, then the key is found as in {@link #decipher(String)}
+     * and applied in parallel.
+     *
+     * @param text the text to decipher
+     * @param pool the pool the text is analysed and deciphered on
+     * @return the plain text
+     */
+    public static String decipher(String text, ForkJoinPool pool) {
+        return decipher(text, pool, Profile.ENGLISH);
+    }
+
+    /**
+     * Deciphers a text ciphered using the Caesar cipher, on several threads, comparing it to the letter frequencies of
+     * a given language.
+     *
+     * @param text    the text to decipher
+     * @param pool    the pool the text is analysed and deciphered on
+     * @param profile the language of the plain text
+     * @return the plain text
+     * @see #decipher(String, ForkJoinPool)
+     */
+    public static String decipher(String text, ForkJoinPool pool, Profile profile) {
+        int key = crackKey(text, pool, profile);
+        LOG.fine("[CAESAR] Detected key " + key);
+        LOG.fine("[CAESAR] Applying key");
+        return decipher(text, key, pool);
+    }
+
+    /**
+     * Finds the key of a text ciphered using the Caesar cipher, given its letter counts and the language of the plain
+     * text.
+     * <p>
+     * The keys are ranked by {@link #crack(Histogram, Profile)}, then the best few are told apart by the quadgrams of
+     * the start of the text they decipher, see {@link Refiner}.
+     *
+     * @param text      the ciphered text
+     * @param histogram the letter counts of the ciphered text
+     * @param profile   the language of the plain text
+     * @return the key
+     */
+    public static int crackKey(CharSequence text, Histogram histogram, Profile profile) {
+        char[][] choices = {Refiner.choices(crack(histogram, profile), 0)};
+        return Refiner.refine(text, choices, Caesar::unshift, profile)[0];
+    }
+
+    /**
+     * Finds the key of a text ciphered using the Caesar cipher, given the language of the plain text.
+     *
+     * @param text    the ciphered text
+     * @param profile the language of the plain text
+     * @return the key
+     * @see #crackKey(CharSequence, Histogram, Profile)
+     */
+    public static int crackKey(String text, Profile profile) {
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_SEARCH)) {
+            timer.bytes(text.length());
+            return crackKey(text, new Histogram().count(text), profile);
         }
-        System.out.println("[CAESAR] Detected key " + bestOffset);
-        System.out.println("[CAESAR] Applying key");
-        return cipher(text, bestOffset);
+    }
+
+    /**
+     * Finds the key of a text ciphered using the Caesar cipher, counting its letters on several threads.
+     *
+     * @param text    the ciphered text
+     * @param pool    the pool the letters are counted on
+     * @param profile the language of the plain text
+     * @return the key
+     * @see #crackKey(CharSequence, Histogram, Profile)
+     */
+    public static int crackKey(String text, ForkJoinPool pool, Profile profile) {
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_SEARCH)) {
+            timer.bytes(text.length());
+            return crackKey(text, Histogram.count(text, pool), profile);
+        }
+    }
+
+    /**
+     * Shifts a letter back by a key, leaving anything else as it is.
+     */
+    static char unshift(char c, char key) {
+        int letter = c - 'a';
+        return letter >= 0 && letter < 26 ? (char) (Math.floorMod(letter - key, 26) + 'a') : c;
+    }
+
+    /**
+     * Ranks every possible key of a text ciphered using the Caesar cipher.
+     * <p>
+     * The letters of the text are counted once. Deciphering with a key only shifts those counts, so each key is
+     * scored by comparing the shifted counts to the standard English frequencies, without deciphering the text.
+     *
+     * @param text the ciphered text
+     * @return the 26 possible keys, from the most to the least likely
+     */
+    public static List<Candidate> crack(String text) {
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_SEARCH)) {
+            timer.bytes(text.length());
+            return crack(new Histogram().count(text));
+        }
+    }
+
+    /**
+     * Ranks every possible key of a Caesar ciphered text, given its letter counts.
+     *
+     * @param histogram the letter counts of the ciphered text
+     * @return the 26 possible keys, from the most to the least likely
+     * @see #crack(String)
+     */
+    public static List<Candidate> crack(Histogram histogram) {
+        return crack(histogram, Profile.ENGLISH);
+    }
+
+    /**
+     * Ranks every possible key of a Caesar ciphered text, given its letter counts and the language of the plain text.
+     *
+     * @param histogram the letter counts of the ciphered text
+     * @param profile   the language of the plain text
+     * @return the 26 possible keys, from the most to the least likely
+     * @see #crack(String)
+     */
+    public static List<Candidate> crack(Histogram histogram, Profile profile) {
+        Candidate[] candidates = new Candidate[26];
+
+        for (int key = 0; key < 26; key++) {
+            // deciphering with key shifts every letter back by key
+            candidates[key] = new Candidate(key, histogram.chiSquare(profile.frequencies(), -key));
+        }
+
+        Metrics.addCandidates(candidates.length);
+        Arrays.sort(candidates);
+        return List.of(candidates);
     }
 }
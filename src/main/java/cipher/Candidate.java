@@ -0,0 +1,17 @@
+package cipher;
+
+/**
+ * A possible key found while cracking a cipher, along with its score.
+ * <p>
+ * The lower the score, the better the candidate. Candidates are thus sorted from the best to the worst.
+ *
+ * @param key   the candidate key
+ * @param score how far the candidate is from the expected statistics
+ */
+public record Candidate(int key, double score) implements Comparable<Candidate> {
+
+    @Override
+    public int compareTo(Candidate other) {
+        return Double.compare(score, other.score);
+    }
+}
@@ -0,0 +1,60 @@
+package cipher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Splits work on a text into chunks processed in parallel.
+ */
+final class Chunks {
+
+    /**
+     * The smallest chunk worth handing to another thread.
+     */
+    static final int MIN_CHUNK = 1 << 16;
+
+    private Chunks() {
+    }
+
+    /**
+     * An operation on the range of a text between two indexes.
+     */
+    interface RangeOperation {
+        void apply(int from, int to);
+    }
+
+    /**
+     * Applies an operation on every chunk of a text, in parallel, and waits for all of them to be done.
+     * <p>
+     * Every chunk but the last one has a length that is a multiple of {@code alignment}. With the length of a Vernam
+     * key as alignment, every chunk thus starts with the first character of the key.
+     *
+     * @param pool      the pool the chunks are processed on
+     * @param length    the length of the text
+     * @param alignment what the length of the chunks must be a multiple of
+     * @param operation the operation applied on each chunk
+     */
+    static void forEach(ForkJoinPool pool, int length, int alignment, RangeOperation operation) {
+        int chunks = Math.max(1, Math.min(pool.getParallelism() * 4, length / MIN_CHUNK));
+        int size = (length + chunks - 1) / chunks;
+        size = Math.max(alignment, (size + alignment - 1) / alignment * alignment);
+
+        if (size >= length) {
+            operation.apply(0, length);
+            return;
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int from = 0; from < length; from += size) {
+            int start = from;
+            int end = Math.min(length, from + size);
+            tasks.add(pool.submit(() -> operation.apply(start, end)));
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+}
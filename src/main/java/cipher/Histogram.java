@@ -0,0 +1,261 @@
+package cipher;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+public class Histogram {
+
+    /**
+     * The amount of occurrences of each letter, 'a' being at index 0.
+     */
+    private final long[] counts = new long[26];
+
+    /**
+     * The amount of characters that aren't lowercase English letters.
+     */
+    private long others;
+
+    /**
+     * Counts one character.
+     *
+     * @param c the character to count
+     */
+    public void add(int c) {
+        int letter = c - 'a';
+        if (letter >= 0 && letter < 26) counts[letter]++;
+        else others++;
+    }
+
+    /**
+     * Counts one character several times.
+     *
+     * @param c     the character to count
+     * @param times the amount of times it is counted
+     */
+    public void add(int c, long times) {
+        int letter = c - 'a';
+        if (letter >= 0 && letter < 26) counts[letter] += times;
+        else others += times;
+    }
+
+    /**
+     * Counts every character of a text.
+     *
+     * @param text the text to count the characters of
+     * @return this histogram
+     */
+    public Histogram count(CharSequence text) {
+        return count(text, 0, text.length());
+    }
+
+    /**
+     * Counts the characters of a text between two indexes.
+     *
+     * @param text the text to count the characters of
+     * @param from the index of the first character, inclusive
+     * @param to   the index of the last character, exclusive
+     * @return this histogram
+     */
+    public Histogram count(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            add(text.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Counts the characters of a column of a text : the characters at {@code start}, {@code start + step}, ...
+     *
+     * @param text  the text to count the characters of
+     * @param start the index of the first character of the column
+     * @param step  the distance between two characters of the column, such as the length of a key
+     * @return this histogram
+     */
+    public Histogram countColumn(CharSequence text, int start, int step) {
+        for (int i = start; i < text.length(); i += step) {
+            add(text.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Counts the characters of a range of a char array.
+     *
+     * @param buf the array holding the characters
+     * @param off the index of the first character
+     * @param len the amount of characters to count
+     * @return this histogram
+     */
+    public Histogram count(char[] buf, int off, int len) {
+        for (int i = off, end = off + len; i < end; i++) {
+            add(buf[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Counts the characters of a range of ASCII bytes.
+     *
+     * @param buf the array holding the characters
+     * @param off the index of the first byte
+     * @param len the amount of bytes to count
+     * @return this histogram
+     */
+    public Histogram count(byte[] buf, int off, int len) {
+        if (Kernels.VECTOR) {
+            others += VectorKernels.count(buf, off, len, counts);
+            return this;
+        }
+
+        for (int i = off, end = off + len; i < end; i++) {
+            add(buf[i] & 0xFF);
+        }
+        return this;
+    }
+
+    /**
+     * Counts every character of a text, on several threads.
+     * <p>
+     * Each chunk of the text is counted in its own histogram, and they are all merged at the end.
+     *
+     * @param text the text to count the characters of
+     * @param pool the pool the chunks are counted on
+     * @return a new histogram of the text
+     */
+    public static Histogram count(CharSequence text, ForkJoinPool pool) {
+        Histogram histogram = new Histogram();
+
+        Chunks.forEach(pool, text.length(), 1, (from, to) -> {
+            Histogram chunk = new Histogram().count(text, from, to);
+            synchronized (histogram) {
+                histogram.merge(chunk);
+            }
+        });
+
+        return histogram;
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     *
+     * @param other the histogram to merge into this one
+     * @return this histogram
+     */
+    public Histogram merge(Histogram other) {
+        for (int i = 0; i < 26; i++) {
+            counts[i] += other.counts[i];
+        }
+        others += other.others;
+        return this;
+    }
+
+    /**
+     * Resets every count to 0, so the histogram can be reused.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        others = 0;
+    }
+
+    /**
+     * Returns the amount of occurrences of a letter.
+     *
+     * @param letter the index of the letter in the alphabet, 0 being 'a'
+     * @return the amount of times the letter was counted
+     */
+    public long get(int letter) {
+        return counts[letter];
+    }
+
+    /**
+     * Returns the amount of counted characters that aren't lowercase English letters.
+     *
+     * @return the amount of other characters
+     */
+    public long others() {
+        return others;
+    }
+
+    /**
+     * Returns the amount of counted characters, letters or not.
+     *
+     * @return the amount of characters
+     */
+    public long total() {
+        long total = others;
+        for (long count : counts) total += count;
+        return total;
+    }
+
+    /**
+     * Performs a Chi-Square test between the counted characters and reference letter frequencies.
+     * <p>
+     * This method will return a sentinel value of {@code Double.MAX_VALUE} if characters that aren't standard
+     * lowercase English letters were counted.
+     *
+     * @param expected the frequency of each letter in the reference language, 'a' being at index 0
+     * @return the chi square resulting from the comparison between the counts and the reference frequencies
+     */
+    public double chiSquare(double[] expected) {
+        if (others > 0) return Double.MAX_VALUE;
+
+        long total = total();
+        if (total == 0) return 0;
+
+        double ret = 0;
+        for (int i = 0; i < 26; i++) {
+            double ci = counts[i] * 1. / total;
+            double ei = expected[i];
+            ret += (ci - ei) * (ci - ei) / ei;
+        }
+        return ret;
+    }
+
+    /**
+     * Performs a Chi-Square test between the counted characters, once shifted, and reference letter frequencies.
+     * <p>
+     * This gives the same result as shifting every letter of the counted text by {@code shift} in the alphabet,
+     * as the Caesar cipher does, and counting it again, without going through the text.
+     * <p>
+     * Unlike {@link #chiSquare(double[])}, characters that aren't letters are ignored : the Caesar and Vigenère
+     * ciphers leave them as they are, so they tell nothing about the shift, and a single line break must not rule out
+     * every shift.
+     *
+     * @param expected the frequency of each letter in the reference language, 'a' being at index 0
+     * @param shift    the amount every counted letter is shifted by
+     * @return the chi square resulting from the comparison of the letters, or 0 if no letter was counted
+     */
+    public double chiSquare(double[] expected, int shift) {
+        long total = total() - others;
+        if (total == 0) return 0;
+
+        double ret = 0;
+        // the ith letter of the shifted text was the kth letter of the counted text
+        int k = Math.floorMod(-shift, 26);
+        for (int i = 0; i < 26; i++) {
+            double ci = counts[k] * 1. / total;
+            double ei = expected[i];
+            ret += (ci - ei) * (ci - ei) / ei;
+            if (++k == 26) k = 0;
+        }
+        return ret;
+    }
+
+    /**
+     * Computes the index of coincidence of the counted letters.
+     * <p>
+     * That is the probability that two letters picked at random are the same. Characters that aren't letters are
+     * ignored.
+     *
+     * @return the index of coincidence, or 0 if less than two letters were counted
+     */
+    public double indexOfCoincidence() {
+        long sum = 0;
+        long letters = 0;
+        for (long count : counts) {
+            sum += count * (count - 1);
+            letters += count;
+        }
+        return letters < 2 ? 0 : 1.0 * sum / (letters * (letters - 1));
+    }
+}
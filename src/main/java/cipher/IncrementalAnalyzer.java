@@ -0,0 +1,375 @@
+package cipher;
+
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Analyses a ciphered text that keeps growing, one appended chunk at a time, without keeping the text.
+ * <p>
+ * For every key length up to a maximum, the symbols of each column are counted, along with the sum of
+ * {@code n(n - 1)} over the symbols of the column, from which its index of coincidence follows. Appending a chunk
+ * updates those counts in place, so it costs the same whatever was appended before : {@code maxPeriod} updates per
+ * character. Key lengths and keys are then ranked on demand from the counts, exactly as {@link KeyLengthAnalyzer},
+ * {@link Caesar} and {@link Vernam} rank them from the whole text.
+ * <p>
+ * The state can be saved to a checkpoint file and loaded back, to resume the analysis after a restart. The file only
+ * holds the symbols that were met and the counts that aren't zero, as variable-length integers.
+ * <p>
+ * N.B. : the counts of the columns take {@code maxPeriod² / 2} counters per distinct symbol met : the maximum key
+ * length should stay in the hundreds. Counts are ints, so a single column can't hold more than 2³¹ of a symbol.
+ */
+public class IncrementalAnalyzer {
+
+    /**
+     * The longest key length analysed when none is given.
+     */
+    public static final int DEFAULT_MAX_PERIOD = 100;
+
+    /**
+     * The version of the checkpoint format written by {@link #save(Path)}.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x46514941; // "FQIA"
+
+    private final int maxPeriod;
+    private long length;
+
+    /**
+     * For each symbol met, its index in the counts plus one, or 0 if it wasn't met yet.
+     */
+    private final int[] slots = new int[Character.MAX_VALUE + 1];
+    private char[] symbols = new char[32];
+    private int distinct;
+
+    /**
+     * For each key length p, the counts of the symbols of its columns : symbol s of column c is at
+     * {@code c * symbols.length + s}.
+     */
+    private final int[][] counts;
+
+    /**
+     * For each key length p, the sum of {@code n(n - 1)} over the symbols of each of its columns.
+     */
+    private final long[][] pairs;
+
+    /**
+     * For each key length p, the column the next appended character falls in.
+     */
+    private final int[] columns;
+
+    /**
+     * Creates an analyzer of an empty text.
+     *
+     * @param maxPeriod the longest key length to analyse
+     */
+    public IncrementalAnalyzer(int maxPeriod) {
+        if (maxPeriod < 1 || maxPeriod > Character.MAX_VALUE)
+            throw new IllegalArgumentException("The longest key length must be between 1 and 65535");
+
+        this.maxPeriod = maxPeriod;
+        this.counts = new int[maxPeriod + 1][];
+        this.pairs = new long[maxPeriod + 1][];
+        this.columns = new int[maxPeriod + 1];
+        for (int period = 1; period <= maxPeriod; period++) {
+            counts[period] = new int[period * symbols.length];
+            pairs[period] = new long[period];
+        }
+    }
+
+    /**
+     * Counts a chunk appended to the text.
+     *
+     * @param chunk the characters appended to the text
+     * @return this analyzer
+     */
+    public IncrementalAnalyzer append(CharSequence chunk) {
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_LENGTH)) {
+            timer.bytes(chunk.length());
+            for (int i = 0; i < chunk.length(); i++) {
+                int symbol = slot(chunk.charAt(i));
+                int stride = symbols.length;
+
+                for (int period = 1; period <= maxPeriod; period++) {
+                    int column = columns[period];
+
+                    // when a symbol is counted for the (n+1)th time, n(n-1) grows by 2n
+                    pairs[period][column] += 2L * counts[period][column * stride + symbol]++;
+                    columns[period] = column + 1 == period ? 0 : column + 1;
+                }
+            }
+        }
+
+        length += chunk.length();
+        return this;
+    }
+
+    /**
+     * Returns the amount of characters appended so far.
+     *
+     * @return the length of the text
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Returns the longest key length analysed.
+     *
+     * @return the maximum key length
+     */
+    public int maxPeriod() {
+        return maxPeriod;
+    }
+
+    /**
+     * Ranks the key lengths of the text appended so far, as {@link KeyLengthAnalyzer#rank(CharSequence, int)} would.
+     *
+     * @param expectedIC the index of coincidence of the language of the plain text
+     * @return the key lengths whose columns hold at least {@link KeyLengthAnalyzer#MIN_COLUMN_LENGTH} characters,
+     * from the most to the least likely
+     */
+    public List<Candidate> rankKeyLengths(double expectedIC) {
+        long periods = Math.min(maxPeriod, length / KeyLengthAnalyzer.MIN_COLUMN_LENGTH);
+        List<Candidate> candidates = new ArrayList<>();
+
+        for (int period = 1; period <= periods; period++) {
+            double total = 0;
+            for (int column = 0; column < period; column++) {
+                long size = columnLength(period, column);
+                if (size > 1) total += 1.0 * pairs[period][column] / (size * (size - 1));
+            }
+            candidates.add(new Candidate(period, Math.abs(total / period - expectedIC)));
+        }
+        Metrics.addCandidates(candidates.size());
+
+        candidates.sort(null);
+        return candidates;
+    }
+
+    /**
+     * Ranks the Caesar keys of the text appended so far.
+     *
+     * @param profile the language of the plain text
+     * @return the 26 possible keys, from the most to the least likely
+     * @see Caesar#crack(Histogram, Profile)
+     */
+    public List<Candidate> rankCaesar(Profile profile) {
+        return Caesar.crack(letters(1, 0), profile);
+    }
+
+    /**
+     * Finds the Vernam key of the text appended so far, once its length is known.
+     *
+     * @param keyLength the length of the key, at most {@link #maxPeriod()}
+     * @param profile   the language of the plain text
+     * @return the key (hopefully), whose characters are 0 where no character deciphers the column to letters
+     * @see Vernam#solveKey(CharSequence, int, Profile)
+     */
+    public char[] solveVernam(int keyLength, Profile profile) {
+        checkKeyLength(keyLength);
+        char[] key = new char[keyLength];
+        SymbolHistogram histogram = new SymbolHistogram();
+
+        for (int column = 0; column < keyLength; column++) {
+            histogram.clear();
+            int base = column * symbols.length;
+            for (int s = 0; s < distinct; s++) {
+                int count = counts[keyLength][base + s];
+                if (count > 0) histogram.add(symbols[s], count);
+            }
+            List<Candidate> candidates = histogram.rank(profile.frequencies());
+            key[column] = candidates.isEmpty() ? 0 : (char) candidates.get(0).key();
+        }
+
+        return key;
+    }
+
+    /**
+     * Finds the Vigenère key of the text appended so far, once its length is known.
+     *
+     * @param keyLength the length of the key, at most {@link #maxPeriod()}
+     * @param profile   the language of the plain text
+     * @return the key (hopefully)
+     * @see Vigenere#solveKey(CharSequence, int, Profile)
+     */
+    public char[] solveVigenere(int keyLength, Profile profile) {
+        checkKeyLength(keyLength);
+        char[] key = new char[keyLength];
+
+        for (int column = 0; column < keyLength; column++) {
+            key[column] = (char) ('a' + Caesar.crack(letters(keyLength, column), profile).get(0).key());
+        }
+
+        return key;
+    }
+
+    /**
+     * Saves the state of the analyzer to a checkpoint file, which is replaced atomically.
+     *
+     * @param path the path to the checkpoint
+     * @throws IOException if the file couldn't be written
+     */
+    public void save(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeShort(maxPeriod);
+            out.writeLong(length);
+            out.writeInt(distinct);
+            for (int s = 0; s < distinct; s++) {
+                out.writeChar(symbols[s]);
+            }
+
+            // most symbols are missing from most columns : only the counts that aren't zero are written, as varints
+            for (int period = 1; period <= maxPeriod; period++) {
+                for (int column = 0; column < period; column++) {
+                    int base = column * symbols.length;
+                    int nonZero = 0;
+                    for (int s = 0; s < distinct; s++) {
+                        if (counts[period][base + s] != 0) nonZero++;
+                    }
+
+                    writeVarint(out, nonZero);
+                    for (int s = 0; s < distinct; s++) {
+                        int count = counts[period][base + s];
+                        if (count == 0) continue;
+                        writeVarint(out, s);
+                        writeVarint(out, count);
+                    }
+                }
+            }
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the state of an analyzer from a checkpoint file written by {@link #save(Path)}.
+     *
+     * @param path the path to the checkpoint
+     * @return the analyzer, ready to take the next chunks
+     * @throws IOException              if the file couldn't be read
+     * @throws IllegalArgumentException if the file isn't a checkpoint of a supported version
+     */
+    public static IncrementalAnalyzer load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) throw new IllegalArgumentException(path + " is not a checkpoint");
+            int version = in.readUnsignedByte();
+            if (version != VERSION)
+                throw new IllegalArgumentException(path + " is a checkpoint of unsupported version " + version);
+
+            IncrementalAnalyzer analyzer = new IncrementalAnalyzer(in.readUnsignedShort());
+            analyzer.length = in.readLong();
+            int distinct = in.readInt();
+            for (int s = 0; s < distinct; s++) {
+                analyzer.slot(in.readChar());
+            }
+
+            int stride = analyzer.symbols.length;
+            for (int period = 1; period <= analyzer.maxPeriod; period++) {
+                for (int column = 0; column < period; column++) {
+                    int nonZero = readVarint(in);
+                    for (int i = 0; i < nonZero; i++) {
+                        int s = readVarint(in);
+                        long count = readVarint(in);
+                        if (s >= distinct) throw new IllegalArgumentException(path + " is corrupted");
+                        analyzer.counts[period][column * stride + s] = (int) count;
+                        analyzer.pairs[period][column] += count * (count - 1);
+                    }
+                }
+                analyzer.columns[period] = (int) (analyzer.length % period);
+            }
+
+            return analyzer;
+        }
+    }
+
+    /**
+     * Writes a positive int 7 bits at a time, the highest bit of each byte telling if another one follows.
+     */
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Returns the index of a symbol in the counts, making room for it if it is met for the first time.
+     */
+    private int slot(char c) {
+        int slot = slots[c];
+        if (slot != 0) return slot - 1;
+
+        if (distinct == symbols.length) grow();
+        symbols[distinct] = c;
+        slots[c] = ++distinct;
+        return distinct - 1;
+    }
+
+    /**
+     * Doubles the amount of symbols the counts have room for in each column.
+     */
+    private void grow() {
+        int stride = symbols.length;
+        int wider = stride * 2;
+
+        for (int period = 1; period <= maxPeriod; period++) {
+            int[] grown = new int[period * wider];
+            for (int column = 0; column < period; column++) {
+                System.arraycopy(counts[period], column * stride, grown, column * wider, stride);
+            }
+            counts[period] = grown;
+        }
+        symbols = Arrays.copyOf(symbols, wider);
+    }
+
+    /**
+     * Counts the letters of a column, from the counts of its symbols. The other symbols are left out, as they tell
+     * nothing about a Caesar or Vigenere shift.
+     */
+    private Histogram letters(int period, int column) {
+        Histogram histogram = new Histogram();
+        int base = column * symbols.length;
+        for (int s = 0; s < distinct; s++) {
+            int count = counts[period][base + s];
+            if (count > 0 && symbols[s] >= 'a' && symbols[s] <= 'z') histogram.add(symbols[s], count);
+        }
+        return histogram;
+    }
+
+    private long columnLength(int period, int column) {
+        return length / period + (column < length % period ? 1 : 0);
+    }
+
+    private void checkKeyLength(int keyLength) {
+        if (keyLength < 1 || keyLength > maxPeriod)
+            throw new IllegalArgumentException("The key length must be between 1 and " + maxPeriod);
+    }
+}
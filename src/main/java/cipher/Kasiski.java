@@ -0,0 +1,194 @@
+package cipher;
+
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds likely key lengths from the distances between repeated trigrams and quadgrams, as Kasiski did.
+ * <p>
+ * A group of letters that appears twice in the plain text at a distance that is a multiple of the key length is
+ * ciphered the same both times. So the distances between repeated groups of the ciphered text are mostly multiples of
+ * the key length. The text is indexed in a single pass : each trigram and quadgram is looked up in an open-addressing
+ * map of the position it was last seen at, and the distance to it is counted, up to {@link #MAX_DISTANCE}. A key length
+ * then gets a vote from every counted distance it divides.
+ * <p>
+ * By chance alone, a key length k divides one distance in k. The score of k is thus how many times less often it
+ * divides the distances than that : lower is better, and the key length and its multiples score about
+ * {@code 1 / keyLength}.
+ * <p>
+ * N.B. : only the first {@link #MAX_INDEXED} characters are indexed, which holds more than enough repeats, so that the
+ * maps, which grow with the amount of distinct groups, stay a few megabytes whatever the length of the text.
+ */
+public class Kasiski {
+
+    /**
+     * The amount of characters indexed at most.
+     */
+    public static final int MAX_INDEXED = 1 << 20;
+
+    /**
+     * The distance between two repeats beyond which they aren't counted : this bounds the counts whatever the length
+     * of the text, and still leaves dozens of multiples of the longest keys.
+     */
+    private static final int MAX_DISTANCE = 1 << 16;
+
+    private Kasiski() {
+    }
+
+    /**
+     * Ranks every key length from 2 to {@code maxPeriod} that divides at least one distance between repeats.
+     *
+     * @param text      the ciphered text
+     * @param maxPeriod the longest key length to try
+     * @return the voted key lengths, from the most to the least likely, which is empty if nothing repeats
+     */
+    public static List<Candidate> rank(CharSequence text, int maxPeriod) {
+        int length = Math.min(text.length(), MAX_INDEXED);
+        int periods = Math.min(maxPeriod, length);
+        long[] votes = new long[Math.max(periods, 1) + 1];
+        int[] distances = new int[MAX_DISTANCE];
+        long repeats = 0;
+
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_LENGTH)) {
+            timer.bytes(length);
+            PositionMap trigrams = new PositionMap();
+            PositionMap quadgrams = new PositionMap();
+
+            long gram = 0;
+            for (int i = 0; i < length; i++) {
+                gram = gram << 16 | text.charAt(i);
+                if (i < 2) continue;
+
+                // the groups are keyed by the position of their last character
+                int last = trigrams.put(gram & 0xFFFF_FFFF_FFFFL, i);
+                if (last >= 0 && i - last < MAX_DISTANCE) {
+                    distances[i - last]++;
+                    repeats++;
+                }
+                if (i < 3) continue;
+
+                last = quadgrams.put(gram, i);
+                if (last >= 0 && i - last < MAX_DISTANCE) {
+                    distances[i - last]++;
+                    repeats++;
+                }
+            }
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        if (repeats == 0) return candidates;
+
+        for (int period = 2; period <= periods; period++) {
+            for (int distance = period; distance < MAX_DISTANCE; distance += period) {
+                votes[period] += distances[distance];
+            }
+        }
+        for (int period = 2; period <= periods; period++) {
+            if (votes[period] > 0) candidates.add(new Candidate(period, 1.0 * repeats / (votes[period] * period)));
+        }
+        Metrics.addCandidates(candidates.size());
+
+        candidates.sort(null);
+        return candidates;
+    }
+
+    /**
+     * Merges two rankings of the same key lengths, by the sum of each key length's positions in both.
+     * <p>
+     * The candidates keep their score from {@code scored}, so that the merged ranking can be used wherever that one
+     * could, such as with {@link KeyLengthAnalyzer#best(List)}. Key lengths missing from {@code voted} rank after
+     * every voted one.
+     *
+     * @param scored the key lengths ranked by index of coincidence
+     * @param voted  the key lengths ranked by {@link #rank(CharSequence, int)}
+     * @return the key lengths of {@code scored}, from the most to the least likely according to both rankings
+     */
+    public static List<Candidate> combine(List<Candidate> scored, List<Candidate> voted) {
+        int longest = 0;
+        for (Candidate candidate : scored) longest = Math.max(longest, candidate.key());
+
+        int[] votedRank = new int[longest + 1];
+        Arrays.fill(votedRank, voted.size());
+        for (int i = 0; i < voted.size(); i++) {
+            if (voted.get(i).key() <= longest) votedRank[voted.get(i).key()] = i;
+        }
+
+        record Ranked(Candidate candidate, int rank) {
+        }
+        List<Ranked> ranked = new ArrayList<>(scored.size());
+        for (int i = 0; i < scored.size(); i++) {
+            Candidate candidate = scored.get(i);
+            ranked.add(new Ranked(candidate, i + votedRank[candidate.key()]));
+        }
+
+        // the sort is stable, so ties keep the order of the index of coincidence
+        ranked.sort((a, b) -> Integer.compare(a.rank(), b.rank()));
+        return ranked.stream().map(Ranked::candidate).toList();
+    }
+
+    /**
+     * Maps groups of characters, packed in a long, to the last position they were seen at.
+     * <p>
+     * Keys are stored in a single array, probed linearly from their hash : there is no boxing and no node per entry.
+     * The map doubles whenever it is half full, so it is sized for the distinct groups rather than for the text.
+     */
+    private static final class PositionMap {
+
+        private static final int INITIAL_CAPACITY = 1 << 12;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] positions = new int[INITIAL_CAPACITY];
+        private int mask = INITIAL_CAPACITY - 1;
+        private int size;
+
+        /**
+         * Stores the position of a group, returning the position it was last seen at, or -1 if it is new.
+         */
+        int put(long key, int position) {
+            int slot = hash(key) & mask;
+            while (true) {
+                // positions are stored plus one, so that 0 marks an empty slot
+                int stored = positions[slot];
+                if (stored == 0) {
+                    keys[slot] = key;
+                    positions[slot] = position + 1;
+                    if (++size * 2 > keys.length) grow();
+                    return -1;
+                }
+                if (keys[slot] == key) {
+                    positions[slot] = position + 1;
+                    return stored - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldPositions = positions;
+            keys = new long[oldKeys.length * 2];
+            positions = new int[oldKeys.length * 2];
+            mask = keys.length - 1;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldPositions[i] == 0) continue;
+                int slot = hash(oldKeys[i]) & mask;
+                while (positions[slot] != 0) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                positions[slot] = oldPositions[i];
+            }
+        }
+
+        private static int hash(long key) {
+            // the mixing step of MurmurHash3, so that close groups spread over the table
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+    }
+}
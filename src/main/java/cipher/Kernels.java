@@ -0,0 +1,33 @@
+package cipher;
+
+/**
+ * Tells whether the ciphers and the letter counts run on the SIMD kernels of {@link VectorKernels}.
+ * <p>
+ * They do if the {@code jdk.incubator.vector} module is enabled, with {@code --add-modules jdk.incubator.vector},
+ * unless the {@value #PROPERTY} system property is set to false. Otherwise, the scalar loops are used : the results
+ * are the same either way, so the property only serves to compare both.
+ * <p>
+ * N.B. : this is decided once, when the class is first used, so the property must be set before.
+ */
+public final class Kernels {
+
+    /**
+     * The system property that disables the SIMD kernels when set to false.
+     */
+    public static final String PROPERTY = "freqanalysis.vector";
+
+    static final boolean VECTOR = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && !"false".equalsIgnoreCase(System.getProperty(PROPERTY));
+
+    private Kernels() {
+    }
+
+    /**
+     * Tells whether the SIMD kernels are used.
+     *
+     * @return true if they are, false if the scalar loops are
+     */
+    public static boolean isVectorized() {
+        return VECTOR;
+    }
+}
@@ -0,0 +1,315 @@
+package cipher;
+
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class KeyLengthAnalyzer {
+
+    /**
+     * The index of coincidence of standard English text.
+     */
+    public static final double ENGLISH_IC = 0.065;
+
+    /**
+     * How close to {@link #ENGLISH_IC} the average index of coincidence of a key length must be for it to be
+     * considered right.
+     */
+    public static final double EPSILON = 0.005;
+
+    /**
+     * The longest key length tried when none is given.
+     */
+    public static final int DEFAULT_MAX_PERIOD = 1000;
+
+    /**
+     * The minimal amount of characters a column must hold for its index of coincidence to mean something.
+     */
+    public static final int MIN_COLUMN_LENGTH = 20;
+
+    /**
+     * The amount of characters counted between two checks of a deadline.
+     */
+    private static final int DEADLINE_CHECK = 1 << 20;
+
+    /**
+     * The system property that picks how key lengths are ranked : ic, kasiski or combined, see {@link Method}.
+     */
+    public static final String METHOD_PROPERTY = "freqanalysis.keylength";
+
+    /**
+     * The amount of key lengths voted for by {@link Kasiski} that are scored with the index of coincidence, along with
+     * their divisors, with {@link Method#KASISKI}.
+     */
+    private static final int KASISKI_CANDIDATES = 8;
+
+    /**
+     * How key lengths are ranked.
+     * <p>
+     * N.B. : this is decided once, when the class is first used, so the property must be set before.
+     */
+    public enum Method {
+        /**
+         * Every key length is scored with the index of coincidence : one pass over the text per key length.
+         */
+        IC,
+        /**
+         * Only the key lengths voted for the most by {@link Kasiski}, and their divisors, are scored with the index of
+         * coincidence : a single pass over the text to index it, then a few key lengths.
+         */
+        KASISKI,
+        /**
+         * Every key length is scored with the index of coincidence, then ranked by both its score and the votes of
+         * {@link Kasiski}.
+         */
+        COMBINED
+    }
+
+    private static final Method METHOD = Arrays.stream(Method.values())
+            .filter(method -> method.name().equalsIgnoreCase(System.getProperty(METHOD_PROPERTY)))
+            .findFirst().orElse(Method.IC);
+
+    /**
+     * Ranks every key length from 1 to {@code maxPeriod} of a Vernam ciphered text.
+     * <p>
+     * For each key length k, the text is split in k columns (subsequences made of 0, k, 2k, ... characters) and the
+     * index of coincidence of each column is computed. Each column of the right key length is ciphered with a single
+     * key character, so its index of coincidence is the one of English. The score of a key length is how far the
+     * average index of coincidence of its columns is from {@link #ENGLISH_IC}.
+     * <p>
+     * Key lengths are analysed in parallel, on the common fork/join pool. Key lengths whose columns would hold less
+     * than {@link #MIN_COLUMN_LENGTH} characters are not tried.
+     * <p>
+     * N.B. : with {@link Method#KASISKI}, only the key lengths voted for by {@link Kasiski} and their divisors are
+     * tried, and with {@link Method#COMBINED} they are ordered by both methods. See {@link #METHOD_PROPERTY}.
+     *
+     * @param text      the ciphered text
+     * @param maxPeriod the longest key length to try
+     * @return the tried key lengths, from the most to the least likely
+     */
+    public static List<Candidate> rank(CharSequence text, int maxPeriod) {
+        return rank(text, maxPeriod, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Ranks every key length from 1 to {@code maxPeriod} of a Vernam ciphered text, on a given pool.
+     *
+     * @param text      the ciphered text
+     * @param maxPeriod the longest key length to try
+     * @param pool      the pool the key lengths are analysed on
+     * @return the tried key lengths, from the most to the least likely
+     * @see #rank(CharSequence, int)
+     */
+    public static List<Candidate> rank(CharSequence text, int maxPeriod, ForkJoinPool pool) {
+        return rank(text, maxPeriod, pool, ENGLISH_IC);
+    }
+
+    /**
+     * Ranks every key length from 1 to {@code maxPeriod} of a text ciphered from another language than English.
+     *
+     * @param text       the ciphered text
+     * @param maxPeriod  the longest key length to try
+     * @param pool       the pool the key lengths are analysed on
+     * @param expectedIC the index of coincidence of the language of the plain text
+     * @return the tried key lengths, from the most to the least likely
+     * @see #rank(CharSequence, int)
+     * @see Profile#indexOfCoincidence()
+     */
+    public static List<Candidate> rank(CharSequence text, int maxPeriod, ForkJoinPool pool, double expectedIC) {
+        int periods = Math.min(maxPeriod, text.length() / MIN_COLUMN_LENGTH);
+        if (periods < 1) return List.of();
+
+        if (METHOD == Method.IC) return score(text, range(periods), pool, expectedIC);
+
+        List<Candidate> voted = Kasiski.rank(text, periods);
+        if (METHOD == Method.COMBINED) return Kasiski.combine(score(text, range(periods), pool, expectedIC), voted);
+
+        // without any repeat there is nothing to vote with, so every key length is scored
+        if (voted.isEmpty()) return score(text, range(periods), pool, expectedIC);
+
+        // the divisors are scored too, for best() to pick the key length rather than one of its multiples
+        boolean[] picked = new boolean[periods + 1];
+        for (Candidate candidate : voted.subList(0, Math.min(KASISKI_CANDIDATES, voted.size()))) {
+            for (int divisor = 1; divisor <= candidate.key(); divisor++) {
+                if (candidate.key() % divisor == 0) picked[divisor] = true;
+            }
+        }
+        List<Integer> kept = new ArrayList<>();
+        for (int period = 1; period <= periods; period++) {
+            if (picked[period]) kept.add(period);
+        }
+        return score(text, kept.stream().mapToInt(Integer::intValue).toArray(), pool, expectedIC);
+    }
+
+    /**
+     * Scores the given key lengths in parallel.
+     *
+     * @return the key lengths, from the most to the least likely
+     */
+    private static List<Candidate> score(CharSequence text, int[] periods, ForkJoinPool pool, double expectedIC) {
+        double[] scores = new double[periods.length];
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_LENGTH)) {
+            timer.bytes(text.length());
+            pool.invoke(new PeriodTask(text, periods, scores, expectedIC, 0, periods.length));
+        }
+        Metrics.addCandidates(periods.length);
+
+        Candidate[] candidates = new Candidate[periods.length];
+        for (int i = 0; i < periods.length; i++) {
+            candidates[i] = new Candidate(periods[i], scores[i]);
+        }
+
+        Arrays.sort(candidates);
+        return List.of(candidates);
+    }
+
+    private static int[] range(int periods) {
+        int[] range = new int[periods];
+        for (int i = 0; i < periods; i++) {
+            range[i] = i + 1;
+        }
+        return range;
+    }
+
+    /**
+     * Tells how key lengths are ranked.
+     *
+     * @return the method named by the {@value #METHOD_PROPERTY} system property, in any case, or {@link Method#IC} if
+     * it names none
+     */
+    public static Method method() {
+        return METHOD;
+    }
+
+    /**
+     * Picks the key length to use among ranked candidates.
+     * <p>
+     * Any multiple of the right key length also has columns ciphered with a single key character, and may score
+     * slightly better by chance. So rather than the best candidate, the shortest of its divisors that is within
+     * {@link #EPSILON} of English is picked. If not even the best candidate is, the text is deemed undecipherable.
+     *
+     * @param candidates the key lengths ranked by {@link #rank(CharSequence, int)}
+     * @return the best approximation of the key's length, or 0 if there is no candidate within {@link #EPSILON} of
+     * English
+     */
+    public static int best(List<Candidate> candidates) {
+        if (candidates.isEmpty() || candidates.get(0).score() >= EPSILON) return 0;
+
+        int top = candidates.get(0).key();
+        double[] scores = new double[top + 1];
+        Arrays.fill(scores, Double.MAX_VALUE);
+        for (Candidate candidate : candidates) {
+            if (candidate.key() <= top) scores[candidate.key()] = candidate.score();
+        }
+
+        for (int divisor = 1; divisor < top; divisor++) {
+            if (top % divisor == 0 && scores[divisor] < EPSILON) return divisor;
+        }
+        return top;
+    }
+
+    /**
+     * Computes the average index of coincidence of the columns of a key length.
+     *
+     * @param text   the ciphered text
+     * @param period the key length
+     * @param counts a zeroed array of {@code Character.MAX_VALUE + 1} counters, which is zeroed again on return
+     * @return the average index of coincidence of the columns
+     */
+    static double averageIC(CharSequence text, int period, int[] counts) {
+        return averageIC(text, period, counts, Long.MAX_VALUE);
+    }
+
+    /**
+     * Computes the average index of coincidence of the columns of a key length, unless a deadline passes first.
+     * <p>
+     * The deadline is checked every {@link #DEADLINE_CHECK} characters, so that even a single column of a huge text
+     * doesn't hold it up for long.
+     *
+     * @param text     the ciphered text
+     * @param period   the key length
+     * @param counts   a zeroed array of {@code Character.MAX_VALUE + 1} counters, which is zeroed again on return
+     * @param deadline the {@link System#nanoTime()} to give up at, or {@link Long#MAX_VALUE} for none
+     * @return the average index of coincidence of the columns, or NaN if the deadline passed
+     */
+    static double averageIC(CharSequence text, int period, int[] counts, long deadline) {
+        int length = text.length();
+        boolean bounded = deadline != Long.MAX_VALUE;
+        double total = 0;
+
+        for (int column = 0; column < period; column++) {
+            // when a symbol is counted for the (n+1)th time, n(n-1) grows by 2n
+            long sum = 0;
+            long size = 0;
+            boolean expired = false;
+
+            int i = column;
+            while (i < length && !expired) {
+                int end = bounded ? (int) Math.min(length, i + (long) period * DEADLINE_CHECK) : length;
+                for (; i < end; i += period) {
+                    sum += 2L * counts[text.charAt(i)]++;
+                    size++;
+                }
+                expired = bounded && System.nanoTime() - deadline >= 0;
+            }
+
+            // we only reset what we counted, rather than the whole array
+            for (int j = column; j < i; j += period) {
+                counts[text.charAt(j)] = 0;
+            }
+
+            if (expired && i < length) return Double.NaN;
+            if (size > 1) total += 1.0 * sum / (size * (size - 1));
+        }
+
+        return total / period;
+    }
+
+    /**
+     * Scores a range of key lengths, splitting it in halves to be scored in parallel.
+     */
+    private static class PeriodTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private static final int THRESHOLD = 8;
+
+        private final CharSequence text;
+        private final int[] periods;
+        private final double[] scores;
+        private final double expectedIC;
+        private final int from;
+        private final int to;
+
+        PeriodTask(CharSequence text, int[] periods, double[] scores, double expectedIC, int from, int to) {
+            this.text = text;
+            this.periods = periods;
+            this.scores = scores;
+            this.expectedIC = expectedIC;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PeriodTask(text, periods, scores, expectedIC, from, middle),
+                        new PeriodTask(text, periods, scores, expectedIC, middle, to));
+                return;
+            }
+
+            int[] counts = new int[Character.MAX_VALUE + 1];
+            for (int i = from; i < to; i++) {
+                scores[i] = Math.abs(averageIC(text, periods[i], counts) - expectedIC);
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package cipher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The letter statistics of a language : unigram, bigram and quadgram log-probabilities.
+ * <p>
+ * A profile is trained once from a corpus, then saved to a compact binary file that is memory-mapped when loaded :
+ * the tables are used straight from the file, without being parsed. The file is made of, in big-endian :
+ * <ul>
+ *     <li>the magic bytes {@code FQPR}</li>
+ *     <li>the version of the format, as an int</li>
+ *     <li>the size of the alphabet, 26, as an int</li>
+ *     <li>the 26 unigram, 676 bigram and 456976 quadgram base 10 log-probabilities, as floats</li>
+ * </ul>
+ * An n-gram is indexed by its letters read as a base 26 number, so "ab" is at index 1 of the bigram table.
+ */
+public class Profile {
+
+    /**
+     * The version of the binary format written by {@link #save(Path)}.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x46515052; // "FQPR"
+    private static final int HEADER = 12;
+    private static final int UNIGRAMS = 26;
+    private static final int BIGRAMS = 26 * 26;
+    private static final int QUADGRAMS = 26 * 26 * 26 * 26;
+    private static final int TRIGRAMS = 26 * 26 * 26;
+
+    /**
+     * The English profile built from {@link Util#ENGLISH_FREQ}.
+     * <p>
+     * As it only knows single letter frequencies, its bigram and quadgram log-probabilities are those of independent
+     * letters : they add nothing to the letter counts, see {@link #hasQuadgrams()}.
+     */
+    public static final Profile ENGLISH = fromFrequencies(Util.ENGLISH_FREQ);
+
+    private final FloatBuffer unigrams;
+    private final FloatBuffer bigrams;
+    private final FloatBuffer quadgrams;
+    private final double[] frequencies;
+    private final boolean trained;
+
+    private Profile(ByteBuffer data) {
+        this(data, null);
+    }
+
+    private Profile(ByteBuffer data, double[] frequencies) {
+        this.trained = frequencies == null;
+        this.unigrams = data.slice(HEADER, UNIGRAMS * 4).asFloatBuffer();
+        this.bigrams = data.slice(HEADER + UNIGRAMS * 4, BIGRAMS * 4).asFloatBuffer();
+        this.quadgrams = data.slice(HEADER + (UNIGRAMS + BIGRAMS) * 4, QUADGRAMS * 4).asFloatBuffer();
+
+        if (frequencies != null) {
+            this.frequencies = frequencies.clone();
+        } else {
+            this.frequencies = new double[UNIGRAMS];
+            for (int i = 0; i < UNIGRAMS; i++) {
+                this.frequencies[i] = Math.pow(10, unigrams.get(i));
+            }
+        }
+    }
+
+    /**
+     * Trains a profile on a corpus.
+     * <p>
+     * N-grams that never appear in the corpus get the log-probability of a hundredth of an occurrence, so a text is
+     * never deemed impossible.
+     *
+     * @param letters the corpus, assumed to be preprocessed by {@code proc.Preprocess} : other characters are skipped
+     *                and break the n-grams they are part of
+     * @return the trained profile
+     * @throws IllegalArgumentException if the corpus holds less than 4 letters in a row
+     */
+    public static Profile train(CharSequence letters) {
+        long[] unigramCounts = new long[UNIGRAMS];
+        long[] bigramCounts = new long[BIGRAMS];
+        long[] quadgramCounts = new long[QUADGRAMS];
+
+        int index = 0; // the last letters read, as a base 26 number
+        int run = 0; // how many letters in a row were read
+        long quadgramTotal = 0;
+        for (int i = 0; i < letters.length(); i++) {
+            int letter = letters.charAt(i) - 'a';
+            if (letter < 0 || letter >= 26) {
+                run = 0;
+                continue;
+            }
+
+            index = (index % TRIGRAMS) * 26 + letter;
+            run++;
+
+            unigramCounts[letter]++;
+            if (run >= 2) bigramCounts[index % BIGRAMS]++;
+            if (run >= 4) {
+                quadgramCounts[index]++;
+                quadgramTotal++;
+            }
+        }
+
+        if (quadgramTotal == 0)
+            throw new IllegalArgumentException("The corpus is too short to train a profile");
+
+        ByteBuffer data = allocate();
+        write(data, HEADER, unigramCounts);
+        write(data, HEADER + UNIGRAMS * 4, bigramCounts);
+        write(data, HEADER + (UNIGRAMS + BIGRAMS) * 4, quadgramCounts);
+
+        return new Profile(data);
+    }
+
+    /**
+     * Loads a profile saved with {@link #save(Path)} by memory-mapping it.
+     *
+     * @param path the path to the profile
+     * @return the loaded profile
+     * @throws IOException              if the file couldn't be read
+     * @throws IllegalArgumentException if the file isn't a profile of a supported version
+     */
+    public static Profile load(Path path) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() != size())
+                throw new IllegalArgumentException(path + " is not a language profile");
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (data.getInt(0) != MAGIC) throw new IllegalArgumentException(path + " is not a language profile");
+        if (data.getInt(4) != VERSION)
+            throw new IllegalArgumentException(path + " is a profile of unsupported version " + data.getInt(4));
+        if (data.getInt(8) != UNIGRAMS)
+            throw new IllegalArgumentException(path + " is a profile of an unsupported alphabet");
+
+        return new Profile(data);
+    }
+
+    /**
+     * Saves the profile to a binary file that can be loaded with {@link #load(Path)}.
+     *
+     * @param path the path to the file
+     * @throws IOException if the file couldn't be written
+     */
+    public void save(Path path) throws IOException {
+        ByteBuffer data = allocate();
+        data.asFloatBuffer().position(HEADER / 4).put(unigrams.duplicate().rewind())
+                .put(bigrams.duplicate().rewind()).put(quadgrams.duplicate().rewind());
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) channel.write(data);
+        }
+    }
+
+    /**
+     * Returns the frequency of each letter, 'a' being at index 0, to be used with
+     * {@link Histogram#chiSquare(double[])}.
+     *
+     * @return the letter frequencies, which must not be modified
+     */
+    public double[] frequencies() {
+        return frequencies;
+    }
+
+    /**
+     * Returns the index of coincidence of the language : the probability that two letters picked at random are the
+     * same.
+     *
+     * @return the index of coincidence
+     */
+    public double indexOfCoincidence() {
+        double ic = 0;
+        for (double frequency : frequencies) ic += frequency * frequency;
+        return ic;
+    }
+
+    /**
+     * Tells whether the quadgrams of the profile were trained on a corpus, or merely derived from its letter
+     * frequencies. Only trained quadgrams tell apart keys that give close letter counts.
+     *
+     * @return true if the profile was trained or loaded, false for {@link #ENGLISH}
+     */
+    public boolean hasQuadgrams() {
+        return trained;
+    }
+
+    /**
+     * Scores how much a text looks like the language, using quadgrams.
+     * <p>
+     * This is the sum of the log-probabilities of every quadgram of the text : the higher, the better. Characters
+     * that aren't lowercase English letters break the quadgrams they are part of.
+     *
+     * @param text the text to score
+     * @return the log-probability of the text
+     */
+    public double fitness(CharSequence text) {
+        double score = 0;
+        int index = 0;
+        int run = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            int letter = text.charAt(i) - 'a';
+            if (letter < 0 || letter >= 26) {
+                run = 0;
+                continue;
+            }
+
+            index = (index % TRIGRAMS) * 26 + letter;
+            if (++run >= 4) score += quadgrams.get(index);
+        }
+
+        return score;
+    }
+
+    private static Profile fromFrequencies(double[] frequencies) {
+        double[] logs = new double[UNIGRAMS];
+        for (int i = 0; i < UNIGRAMS; i++) {
+            logs[i] = Math.log10(frequencies[i]);
+        }
+
+        ByteBuffer data = allocate();
+        FloatBuffer floats = data.asFloatBuffer().position(HEADER / 4);
+
+        for (int i = 0; i < UNIGRAMS; i++) {
+            floats.put((float) logs[i]);
+        }
+        for (int i = 0; i < BIGRAMS; i++) {
+            floats.put((float) (logs[i / 26] + logs[i % 26]));
+        }
+        for (int i = 0; i < QUADGRAMS; i++) {
+            floats.put((float) (logs[i / TRIGRAMS] + logs[i / BIGRAMS % 26] + logs[i / 26 % 26] + logs[i % 26]));
+        }
+
+        return new Profile(data, frequencies);
+    }
+
+    /**
+     * Turns n-gram counts into log-probabilities written at a given offset.
+     */
+    private static void write(ByteBuffer data, int offset, long[] counts) {
+        long total = 0;
+        for (long count : counts) total += count;
+
+        double floor = Math.log10(0.01 / Math.max(total, 1));
+        for (int i = 0; i < counts.length; i++) {
+            double log = counts[i] == 0 ? floor : Math.log10(1.0 * counts[i] / total);
+            data.putFloat(offset + i * 4, (float) log);
+        }
+    }
+
+    /**
+     * Allocates the bytes of a profile, with its header filled.
+     */
+    private static ByteBuffer allocate() {
+        ByteBuffer data = ByteBuffer.allocate(size());
+        data.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, UNIGRAMS);
+        return data;
+    }
+
+    private static int size() {
+        return HEADER + (UNIGRAMS + BIGRAMS + QUADGRAMS) * 4;
+    }
+}
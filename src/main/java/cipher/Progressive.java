@@ -0,0 +1,155 @@
+package cipher;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Cracks keys from growing prefixes of a ciphered text, stopping as soon as the key is found with enough confidence.
+ * <p>
+ * Letter statistics usually settle long before the end of a large text. Rather than analysing the whole text, the
+ * first {@link #INITIAL_SAMPLE} characters are analysed, then twice as many, and so on. After each step, the best key
+ * is compared to the runner-up : the confidence is {@code 1 - best / runnerUp} of their chi-square scores, so 0 means
+ * both are as likely and 1 means the runner-up is out of the question. Once it passes a threshold, the key is returned
+ * and can be applied to the whole text.
+ */
+public class Progressive {
+
+    /**
+     * The amount of characters analysed by the first step.
+     */
+    public static final int INITIAL_SAMPLE = 1 << 12;
+
+    /**
+     * The confidence used when none is given.
+     */
+    public static final double DEFAULT_CONFIDENCE = 0.8;
+
+    /**
+     * A key cracked from a prefix of a text.
+     *
+     * @param key        the cracked key : the shift for Caesar, the characters of the key for Vernam, "" if none was
+     *                   found
+     * @param confidence how confident the cracker is in the key, between 0 and 1
+     * @param analysed   the amount of characters that were analysed
+     * @param total      the length of the text
+     */
+    public record Result(String key, double confidence, int analysed, int total) {
+
+        /**
+         * Returns the share of the text that was analysed.
+         *
+         * @return the analysed fraction, between 0 and 1
+         */
+        public double fraction() {
+            return total == 0 ? 1 : 1.0 * analysed / total;
+        }
+    }
+
+    /**
+     * Cracks the key of a text ciphered using the Caesar cipher from as small a prefix as possible.
+     * <p>
+     * The letters of each new part of the prefix are added to the letter counts of the previous step, so the whole
+     * cracking reads each analysed character once.
+     *
+     * @param text      the ciphered text
+     * @param threshold the confidence the key must reach, between 0 and 1
+     * @param profile   the language of the plain text
+     * @return the cracked key and how much of the text was needed
+     */
+    public static Result crackCaesar(CharSequence text, double threshold, Profile profile) {
+        int total = text.length();
+        Histogram histogram = new Histogram();
+        int counted = 0;
+
+        while (true) {
+            int end = nextEnd(counted, total);
+            histogram.count(text, counted, end);
+            counted = end;
+
+            List<Candidate> candidates = Caesar.crack(histogram, profile);
+            double confidence = confidence(candidates, histogram.total() - histogram.others());
+
+            if (confidence >= threshold || counted == total)
+                return new Result(String.valueOf(candidates.get(0).key()), confidence, counted, total);
+        }
+    }
+
+    /**
+     * Cracks the key of a text ciphered using the Vernam cipher from as small a prefix as possible.
+     * <p>
+     * At each step, the key length is determined on the prefix, then each column is solved. The key is only accepted
+     * once the same key length was found twice in a row, and the confidence of its least certain column passes the
+     * threshold. As the prefix doubles at each step, all the steps analyse at most twice as many characters as the
+     * last one.
+     *
+     * @param text         the ciphered text
+     * @param maxKeyLength the longest key length to try
+     * @param threshold    the confidence the key must reach, between 0 and 1
+     * @param profile      the language of the plain text
+     * @return the cracked key and how much of the text was needed
+     */
+    public static Result crackVernam(CharSequence text, int maxKeyLength, double threshold, Profile profile) {
+        int total = text.length();
+        SymbolHistogram histogram = new SymbolHistogram();
+        int previousLength = -1;
+        int end = 0;
+
+        while (true) {
+            end = nextEnd(end, total);
+            CharSequence prefix = text.subSequence(0, end);
+
+            int length = KeyLengthAnalyzer.best(KeyLengthAnalyzer.rank(prefix, maxKeyLength,
+                    ForkJoinPool.commonPool(), profile.indexOfCoincidence()));
+
+            char[] key = new char[length];
+            double confidence = length == 0 ? 0 : 1;
+            for (int i = 0; i < length; i++) {
+                histogram.clear();
+                List<Candidate> candidates = histogram.count(prefix, i, length).rank(profile.frequencies());
+                key[i] = candidates.isEmpty() ? 0 : (char) candidates.get(0).key();
+                confidence = Math.min(confidence, confidence(candidates, (end - i + length - 1) / length));
+            }
+
+            boolean stable = length == previousLength;
+            previousLength = length;
+
+            if ((stable && confidence >= threshold) || end == total)
+                return new Result(new String(key), confidence, end, total);
+        }
+    }
+
+    /**
+     * Measures how much better the best candidate is than the runner-up.
+     * <p>
+     * Candidates scored {@link Double#MAX_VALUE} are ruled out. When a single candidate is left, the others being ruled
+     * out, it is certain only if it was scored on enough characters : a short column is deciphered to letters by many
+     * keys, whatever the text.
+     *
+     * @param candidates ranked candidates
+     * @param analysed   the amount of characters the candidates were scored on
+     * @return 0 if there is no candidate that isn't ruled out, 1 if there is only one and at least
+     * {@link KeyLengthAnalyzer#MIN_COLUMN_LENGTH} characters were analysed, {@code 1 - best / runnerUp} otherwise
+     */
+    public static double confidence(List<Candidate> candidates, long analysed) {
+        if (candidates.isEmpty()) return 0;
+
+        double best = candidates.get(0).score();
+        if (best == Double.MAX_VALUE) return 0;
+
+        // the candidates are sorted, so the ruled out ones are all last
+        if (candidates.size() == 1 || candidates.get(1).score() == Double.MAX_VALUE)
+            return analysed >= KeyLengthAnalyzer.MIN_COLUMN_LENGTH ? 1 : 0;
+
+        double runnerUp = candidates.get(1).score();
+        if (runnerUp <= 0) return 0;
+        return 1 - best / runnerUp;
+    }
+
+    /**
+     * Returns the end of the next prefix to analyse, twice as long as the previous one.
+     */
+    private static int nextEnd(int end, int total) {
+        long next = end == 0 ? INITIAL_SAMPLE : 2L * end;
+        return (int) Math.min(next, total);
+    }
+}
@@ -0,0 +1,132 @@
+package cipher;
+
+import metrics.Metrics;
+
+import java.util.List;
+
+/**
+ * Picks between the best few characters of each position of a key by how much the deciphered text looks like the
+ * language, using the quadgrams of its profile.
+ * <p>
+ * Frequency analysis scores each position of the key alone, on the letter counts of its column. It can't tell apart
+ * two characters giving close counts, while the wrong one garbles every quadgram the column is part of. So once every
+ * column is ranked, each position of the key is tried in turn with its {@link #CANDIDATES} best characters, and the
+ * one whose deciphered sample has the highest {@link Profile#fitness(CharSequence)} is kept.
+ * <p>
+ * This takes a profile trained on a corpus : the quadgrams of {@link Profile#ENGLISH} are derived from its letter
+ * frequencies, so the key is then left as frequency analysis ranked it.
+ * <p>
+ * N.B. : the sample is deciphered lazily, one character at a time as it is scored : nothing is allocated per try.
+ */
+final class Refiner {
+
+    /**
+     * The amount of characters tried for each position of the key.
+     */
+    static final int CANDIDATES = 3;
+
+    /**
+     * The amount of characters the deciphered sample holds at least.
+     */
+    private static final int MIN_SAMPLE = 1 << 12;
+
+    /**
+     * The amount of characters of each column the deciphered sample holds at least.
+     */
+    private static final int SAMPLE_PER_COLUMN = 32;
+
+    /**
+     * Deciphers one character with one character of the key.
+     */
+    interface Decoder {
+        char decode(char c, char key);
+    }
+
+    private Refiner() {
+    }
+
+    /**
+     * Refines a key ranked column by column.
+     *
+     * @param text    the ciphered text
+     * @param choices the characters that could be at each position of the key, from the most to the least likely,
+     *                only the first {@link #CANDIDATES} being tried ; a position without any is left to 0
+     * @param decoder how a character is deciphered with a character of the key
+     * @param profile the language of the plain text, whose quadgrams must be trained for the key to be refined
+     * @return the key, made of the best character of each position
+     */
+    static char[] refine(CharSequence text, char[][] choices, Decoder decoder, Profile profile) {
+        char[] key = new char[choices.length];
+        for (int i = 0; i < key.length; i++) {
+            if (choices[i].length > 0) key[i] = choices[i][0];
+        }
+        // quadgrams derived from the letter frequencies would only score the letter counts again
+        if (key.length == 0 || !profile.hasQuadgrams()) return key;
+
+        int length = (int) Math.min(text.length(), Math.max(MIN_SAMPLE, (long) SAMPLE_PER_COLUMN * key.length));
+        Deciphered sample = new Deciphered(text, length, key, decoder);
+        double best = profile.fitness(sample);
+        int tried = 1;
+
+        for (int i = 0; i < key.length; i++) {
+            char kept = key[i];
+            for (int j = 1; j < Math.min(CANDIDATES, choices[i].length); j++) {
+                key[i] = choices[i][j];
+                double fitness = profile.fitness(sample);
+                tried++;
+                if (fitness > best) {
+                    best = fitness;
+                    kept = key[i];
+                }
+            }
+            key[i] = kept;
+        }
+
+        Metrics.addCandidates(tried);
+        return key;
+    }
+
+    /**
+     * Lists the characters of the best few candidates, from the most to the least likely.
+     *
+     * @param candidates the ranked candidates, whose keys are characters
+     * @param offset     what is added to each key to make it a character, e.g. 'a' for shifts
+     * @return the characters of the first {@link #CANDIDATES} candidates that aren't ruled out
+     */
+    static char[] choices(List<Candidate> candidates, int offset) {
+        int count = 0;
+        while (count < Math.min(CANDIDATES, candidates.size())
+                && candidates.get(count).score() != Double.MAX_VALUE) count++;
+        // a column ruled out everywhere still keeps its first candidate, as frequency analysis alone would
+        if (count == 0 && !candidates.isEmpty()) count = 1;
+
+        char[] choices = new char[count];
+        for (int i = 0; i < count; i++) {
+            choices[i] = (char) (candidates.get(i).key() + offset);
+        }
+        return choices;
+    }
+
+    /**
+     * A view of the start of a text as deciphered by a key, which follows the changes made to the key.
+     */
+    private record Deciphered(CharSequence text, int length, char[] key, Decoder decoder) implements CharSequence {
+
+        @Override
+        public char charAt(int index) {
+            return decoder.decode(text.charAt(index), key[index % key.length]);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < length; i++) sb.append(charAt(i));
+            return sb.toString();
+        }
+    }
+}
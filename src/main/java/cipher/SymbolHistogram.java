@@ -0,0 +1,129 @@
+package cipher;
+
+import metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the distinct symbols of a Vernam ciphered column.
+ * <p>
+ * A column is ciphered with a single key character, so it can hold at most 26 distinct symbols : one for each letter
+ * of the plain text. Only the first 26 distinct symbols are thus kept, and the histogram remembers if there were
+ * more, in which case no key character can decipher the column.
+ * <p>
+ * The histogram is meant to be reused from one column to the next : clearing it only resets what was counted.
+ */
+class SymbolHistogram {
+
+    private static final int MAX_SYMBOLS = 26;
+
+    /**
+     * For each possible symbol, its index in {@link #symbols} plus one, or 0 if it wasn't counted.
+     */
+    private final byte[] slots = new byte[Character.MAX_VALUE + 1];
+
+    private final char[] symbols = new char[MAX_SYMBOLS];
+    private final long[] counts = new long[MAX_SYMBOLS];
+    private int distinct;
+    private boolean overflow;
+
+    /**
+     * Counts the characters of a column of a text : the characters at {@code start}, {@code start + step}, ...
+     *
+     * @param text  the text holding the column
+     * @param start the index of the first character of the column
+     * @param step  the distance between two characters of the column, which is the length of the key
+     * @return this histogram
+     */
+    SymbolHistogram count(CharSequence text, int start, int step) {
+        for (int i = start; i < text.length(); i += step) {
+            add(text.charAt(i), 1);
+        }
+        return this;
+    }
+
+    /**
+     * Counts a symbol several times.
+     *
+     * @param c     the symbol
+     * @param times the amount of times it is counted
+     */
+    void add(char c, long times) {
+        int slot = slots[c];
+        if (slot != 0) {
+            counts[slot - 1] += times;
+        } else if (distinct < MAX_SYMBOLS) {
+            symbols[distinct] = c;
+            counts[distinct] = times;
+            slots[c] = (byte) ++distinct;
+        } else {
+            overflow = true;
+        }
+    }
+
+    /**
+     * Resets every count, so the histogram can be reused.
+     */
+    void clear() {
+        for (int i = 0; i < distinct; i++) {
+            slots[symbols[i]] = 0;
+        }
+        distinct = 0;
+        overflow = false;
+    }
+
+    int distinct() {
+        return distinct;
+    }
+
+    char symbol(int i) {
+        return symbols[i];
+    }
+
+    long count(int i) {
+        return counts[i];
+    }
+
+    /**
+     * Tells if more than 26 distinct symbols were counted.
+     *
+     * @return true if no single key character can map every symbol to a letter
+     */
+    boolean overflows() {
+        return overflow;
+    }
+
+    /**
+     * Ranks every key character that deciphers all the counted symbols to lowercase English letters.
+     * <p>
+     * The first counted symbol must decipher to a letter, so only the 26 characters that XOR it to 'a'...'z' are
+     * tried. For each one, the letter counts of the plain text are derived from the symbol counts, without deciphering
+     * anything, and compared to the expected letter frequencies.
+     *
+     * @param expected the frequency of each letter in the language of the plain text, 'a' being at index 0
+     * @return the key characters that are possible, from the most to the least likely
+     */
+    List<Candidate> rank(double[] expected) {
+        List<Candidate> candidates = new ArrayList<>(MAX_SYMBOLS);
+        if (overflow || distinct == 0) return candidates;
+
+        Histogram plain = new Histogram();
+        for (int letter = 'a'; letter <= 'z'; letter++) {
+            char key = (char) (symbols[0] ^ letter);
+
+            plain.clear();
+            for (int i = 0; i < distinct; i++) {
+                plain.add(symbols[i] ^ key, counts[i]);
+            }
+
+            // a key that deciphers a symbol outside of [a-z] is discarded
+            if (plain.others() > 0) continue;
+            candidates.add(new Candidate(key, plain.chiSquare(expected)));
+        }
+
+        Metrics.addCandidates(candidates.size());
+        candidates.sort(null);
+        return candidates;
+    }
+}
@@ -5,36 +5,37 @@ import java.util.Map;
 
 public class Util {
 
-    private static final HashMap<Character, Double> STANDARD_FREQ = new HashMap<>();
-
-    static {
-        STANDARD_FREQ.put('a', 0.08167);
-        STANDARD_FREQ.put('b', 0.01492);
-        STANDARD_FREQ.put('c', 0.02782);
-        STANDARD_FREQ.put('d', 0.04253);
-        STANDARD_FREQ.put('e', 0.12702);
-        STANDARD_FREQ.put('f', 0.02228);
-        STANDARD_FREQ.put('g', 0.02015);
-        STANDARD_FREQ.put('h', 0.06094);
-        STANDARD_FREQ.put('i', 0.06966);
-        STANDARD_FREQ.put('j', 0.00153);
-        STANDARD_FREQ.put('k', 0.00772);
-        STANDARD_FREQ.put('l', 0.04025);
-        STANDARD_FREQ.put('m', 0.02406);
-        STANDARD_FREQ.put('n', 0.06749);
-        STANDARD_FREQ.put('o', 0.07507);
-        STANDARD_FREQ.put('p', 0.01929);
-        STANDARD_FREQ.put('q', 0.00095);
-        STANDARD_FREQ.put('r', 0.05987);
-        STANDARD_FREQ.put('s', 0.06327);
-        STANDARD_FREQ.put('t', 0.09056);
-        STANDARD_FREQ.put('u', 0.02758);
-        STANDARD_FREQ.put('v', 0.00978);
-        STANDARD_FREQ.put('w', 0.02360);
-        STANDARD_FREQ.put('x', 0.00150);
-        STANDARD_FREQ.put('y', 0.01974);
-        STANDARD_FREQ.put('z', 0.00074);
-    }
+    /**
+     * The frequency of each letter in English, 'a' being at index 0.
+     */
+    public static final double[] ENGLISH_FREQ = {
+            0.08167, // a
+            0.01492, // b
+            0.02782, // c
+            0.04253, // d
+            0.12702, // e
+            0.02228, // f
+            0.02015, // g
+            0.06094, // h
+            0.06966, // i
+            0.00153, // j
+            0.00772, // k
+            0.04025, // l
+            0.02406, // m
+            0.06749, // n
+            0.07507, // o
+            0.01929, // p
+            0.00095, // q
+            0.05987, // r
+            0.06327, // s
+            0.09056, // t
+            0.02758, // u
+            0.00978, // v
+            0.02360, // w
+            0.00150, // x
+            0.01974, // y
+            0.00074, // z
+    };
 
     /**
      * Returns the frequencies of each character in a string.
@@ -62,26 +63,50 @@ public class Util {
      * Performs a Chi-Square test between a given string and the standard english character frequencies.
      * <p>
      * This method will return a sentinel value of {@code Double.MAX_VALUE} if the given text contains
-     * characters that aren't standard lowercase English letters.
+     * characters that aren't standard lowercase English letters : either the plain text
+     * wasn't preprocessed, or (if ciphered with Vernam) the key is incorrect as it doesn't
+     * cipher back to [a-z] characters.
      *
      * @param text the string to perform the chi square test on
      * @return the chi square resulting from the comparison between text and the standard english character frequencies
      */
     public static double chiSquare(String text) {
-        var freq = getFreq(text);
-        double ret = 0;
-        for (var c : freq.entrySet()) {
-            double ci = c.getValue() * 1. / text.length();
-            Double ei = STANDARD_FREQ.get(c.getKey());
+        return chiSquare(new Histogram().count(text));
+    }
 
-            // if the char couldn't be found in STANDARD_FREQ, either the plain text
-            // wasn't preprocessed, or (if ciphered with Vernam) the key is incorrect as it doesn't
-            // cipher back to [a-z] characters
-            if (ei == null) return Double.MAX_VALUE;
+    /**
+     * Performs a Chi-Square test between counted characters and the standard english character frequencies.
+     *
+     * @param histogram the counted characters
+     * @return the chi square resulting from the comparison, or {@code Double.MAX_VALUE} if characters that aren't
+     * lowercase English letters were counted
+     * @see Histogram#chiSquare(double[])
+     */
+    public static double chiSquare(Histogram histogram) {
+        return histogram.chiSquare(ENGLISH_FREQ);
+    }
 
-            ret += (ci - ei) * (ci - ei) / ei;
-        }
+    /**
+     * Performs a Chi-Square test between counted characters and the letter frequencies of a language profile.
+     *
+     * @param histogram the counted characters
+     * @param profile   the language the characters are compared to
+     * @return the chi square resulting from the comparison, or {@code Double.MAX_VALUE} if characters that aren't
+     * lowercase English letters were counted
+     */
+    public static double chiSquare(Histogram histogram, Profile profile) {
+        return histogram.chiSquare(profile.frequencies());
+    }
 
-        return ret;
+    /**
+     * Scores how much a text looks like the language of a profile, using quadgrams.
+     *
+     * @param text    the text to score
+     * @param profile the language the text is compared to
+     * @return the log-probability of the text : the higher, the better
+     * @see Profile#fitness(CharSequence)
+     */
+    public static double fitness(CharSequence text, Profile profile) {
+        return profile.fitness(text);
     }
 }
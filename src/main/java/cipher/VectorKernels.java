@@ -0,0 +1,260 @@
+package cipher;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * The SIMD versions of the inner loops of the ciphers and the letter counts, on the widest vectors of the CPU.
+ * <p>
+ * Each kernel gives the same result as its scalar loop. The characters left once the last full vector is processed
+ * go through the scalar loop.
+ * <p>
+ * Letters are only counted with vectors in byte arrays : a vector of chars holds half as many characters, and comparing
+ * it to the 26 letters turns out slower than the scalar loop.
+ * <p>
+ * N.B. : this class must only be used if {@link Kernels#VECTOR} is true, as it can't be loaded without the
+ * {@code jdk.incubator.vector} module.
+ */
+final class VectorKernels {
+
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+
+    /**
+     * The last patterns built on each thread. A text is ciphered buffer by buffer with the same key, so the pattern of
+     * the previous buffer is reused rather than built again for each one.
+     */
+    private static final ThreadLocal<Patterns> PATTERNS = ThreadLocal.withInitial(Patterns::new);
+
+    private VectorKernels() {
+    }
+
+    /**
+     * Repeats a key so that a whole vector of it can be read from any position of the key.
+     *
+     * @param key   the key
+     * @param lanes the amount of lanes of the vectors the pattern is read into
+     * @return the key repeated over at least {@code key.length + lanes} characters
+     */
+    static char[] pattern(char[] key, int lanes) {
+        char[] pattern = new char[key.length + lanes];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = key[i % key.length];
+        }
+        return pattern;
+    }
+
+    /**
+     * Repeats a key so that a whole vector of it can be read from any position of the key.
+     *
+     * @see #pattern(char[], int)
+     */
+    static byte[] pattern(byte[] key, int lanes) {
+        byte[] pattern = new byte[key.length + lanes];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = key[i % key.length];
+        }
+        return pattern;
+    }
+
+    /**
+     * XORs a range of characters with a repeated key, a vector at a time.
+     * <p>
+     * The pattern of the key is only built when the key differs from the one of the previous call on this thread.
+     *
+     * @param in   the characters to cipher
+     * @param out  where the ciphered characters are written, at the same indexes
+     * @param from the index of the first character, inclusive
+     * @param to   the index of the last character, exclusive
+     * @param key  the key
+     * @param k    the position in the key of the first character
+     * @return the position in the key of the character following the range
+     */
+    static int xor(char[] in, char[] out, int from, int to, char[] key, int k) {
+        int lanes = SHORTS.length();
+        Patterns patterns = PATTERNS.get();
+        char[] pattern = patterns.chars;
+        if (pattern.length != key.length + lanes || !Arrays.equals(pattern, 0, key.length, key, 0, key.length)) {
+            pattern = patterns.chars = pattern(key, lanes);
+        }
+        int step = lanes % key.length;
+
+        int i = from;
+        for (int bound = from + SHORTS.loopBound(to - from); i < bound; i += lanes) {
+            ShortVector.fromCharArray(SHORTS, in, i)
+                    .lanewise(VectorOperators.XOR, ShortVector.fromCharArray(SHORTS, pattern, k))
+                    .intoCharArray(out, i);
+            k += step;
+            if (k >= key.length) k -= key.length;
+        }
+
+        for (; i < to; i++) {
+            out[i] = (char) (in[i] ^ key[k]);
+            if (++k == key.length) k = 0;
+        }
+        return k;
+    }
+
+    /**
+     * XORs in place a range of bytes with a repeated key, a vector at a time.
+     * <p>
+     * As long as the key is the same as in the previous call on this thread, nothing is allocated.
+     *
+     * @param buf the bytes to cipher
+     * @param off the index of the first byte
+     * @param len the amount of bytes to cipher
+     * @param key the key
+     * @param k   the position in the key of the first byte
+     * @return the position in the key of the byte following the range
+     */
+    static int xor(byte[] buf, int off, int len, byte[] key, int k) {
+        int lanes = BYTES.length();
+        Patterns patterns = PATTERNS.get();
+        byte[] pattern = patterns.bytes;
+        if (pattern.length != key.length + lanes || !Arrays.equals(pattern, 0, key.length, key, 0, key.length)) {
+            pattern = patterns.bytes = pattern(key, lanes);
+        }
+        int step = lanes % key.length;
+
+        int i = off;
+        for (int bound = off + BYTES.loopBound(len); i < bound; i += lanes) {
+            ByteVector.fromArray(BYTES, buf, i)
+                    .lanewise(VectorOperators.XOR, ByteVector.fromArray(BYTES, pattern, k))
+                    .intoArray(buf, i);
+            k += step;
+            if (k >= key.length) k -= key.length;
+        }
+
+        for (int end = off + len; i < end; i++) {
+            buf[i] ^= key[k];
+            if (++k == key.length) k = 0;
+        }
+        return k;
+    }
+
+    /**
+     * Shifts a range of lowercase letters by a Caesar key, a vector at a time.
+     * <p>
+     * Each letter is moved to its index in the alphabet, shifted, and the lanes that went past 'z' are wrapped back by
+     * subtracting 26. A vector holding other characters is shifted by the scalar loop, with {@link Math#floorMod}.
+     *
+     * @param in   the characters to shift
+     * @param out  where the shifted characters are written, at the same indexes
+     * @param from the index of the first character, inclusive
+     * @param to   the index of the last character, exclusive
+     * @param key  the shift, between 0 and 25
+     */
+    static void shift(char[] in, char[] out, int from, int to, int key) {
+        int lanes = SHORTS.length();
+
+        int i = from;
+        for (int bound = from + SHORTS.loopBound(to - from); i < bound; i += lanes) {
+            ShortVector letters = ShortVector.fromCharArray(SHORTS, in, i).sub((short) 'a');
+            if (!letters.compare(VectorOperators.UNSIGNED_LT, (short) 26).allTrue()) {
+                shiftScalar(in, out, i, i + lanes, key);
+                continue;
+            }
+
+            ShortVector shifted = letters.add((short) key);
+            shifted.sub((short) 26, shifted.compare(VectorOperators.GE, (short) 26))
+                    .add((short) 'a')
+                    .intoCharArray(out, i);
+        }
+
+        shiftScalar(in, out, i, to, key);
+    }
+
+    private static void shiftScalar(char[] in, char[] out, int from, int to, int key) {
+        for (int i = from; i < to; i++) {
+            out[i] = (char) (Math.floorMod(in[i] + key - 'a', 26) + 'a');
+        }
+    }
+
+    /**
+     * Shifts in place a range of lowercase ASCII letters by a Caesar key, a vector at a time.
+     * <p>
+     * A vector holding other bytes goes through the scalar loop, which looks every byte up in {@code table}, so that
+     * both give the same result, or fail the same way, whatever the bytes.
+     *
+     * @param buf   the letters to shift
+     * @param off   the index of the first letter
+     * @param len   the amount of letters to shift
+     * @param table the table built by {@link Caesar#shiftTable(int)}
+     * @see #shift(char[], char[], int, int, int)
+     */
+    static void shift(byte[] buf, int off, int len, byte[] table) {
+        int lanes = BYTES.length();
+        // the first entry of the table is 'a' shifted by the key
+        byte key = (byte) (table[0] - 'a');
+
+        int i = off;
+        for (int bound = off + BYTES.loopBound(len); i < bound; i += lanes) {
+            ByteVector letters = ByteVector.fromArray(BYTES, buf, i).sub((byte) 'a');
+            if (!letters.compare(VectorOperators.UNSIGNED_LT, (byte) 26).allTrue()) {
+                shiftScalar(buf, i, i + lanes, table);
+                continue;
+            }
+
+            ByteVector shifted = letters.add(key);
+            shifted.sub((byte) 26, shifted.compare(VectorOperators.GE, (byte) 26))
+                    .add((byte) 'a')
+                    .intoArray(buf, i);
+        }
+
+        shiftScalar(buf, i, off + len, table);
+    }
+
+    private static void shiftScalar(byte[] buf, int from, int to, byte[] table) {
+        for (int i = from; i < to; i++) {
+            buf[i] = table[buf[i] - 'a'];
+        }
+    }
+
+    /**
+     * Counts the letters of a range of ASCII bytes, a vector at a time.
+     * <p>
+     * A vector of bytes is compared to every letter, and the lanes that match are counted.
+     *
+     * @param buf    the bytes to count
+     * @param off    the index of the first byte
+     * @param len    the amount of bytes to count
+     * @param counts the counts of the 26 letters, which are incremented
+     * @return the amount of bytes that aren't lowercase letters
+     */
+    static long count(byte[] buf, int off, int len, long[] counts) {
+        int lanes = BYTES.length();
+
+        long letters = 0;
+        int i = off;
+        for (int bound = off + BYTES.loopBound(len); i < bound; i += lanes) {
+            ByteVector bytes = ByteVector.fromArray(BYTES, buf, i);
+            for (int letter = 0; letter < 26; letter++) {
+                int count = bytes.eq((byte) ('a' + letter)).trueCount();
+                counts[letter] += count;
+                letters += count;
+            }
+        }
+
+        for (int end = off + len; i < end; i++) {
+            int letter = buf[i] - 'a';
+            if (letter >= 0 && letter < 26) {
+                counts[letter]++;
+                letters++;
+            }
+        }
+        return len - letters;
+    }
+
+    /**
+     * The patterns of the last keys used on a thread, as built by {@link #pattern(char[], int)} and
+     * {@link #pattern(byte[], int)}.
+     */
+    private static final class Patterns {
+        private char[] chars = new char[0];
+        private byte[] bytes = new byte[0];
+    }
+}
@@ -1,6 +1,19 @@
 package cipher;
 
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Logger;
+
 public class Vernam {
+
+    private static final Logger LOG = Logger.getLogger(Vernam.class.getName());
+
     /**
      * Ciphers a plain text using the Vernam cipher.
      * <p>
@@ -16,18 +29,150 @@ public class Vernam {
      * @return the ciphered string
      */
     public static String cipher(String text, char[] key) {
+        return cipher(text, key, 0);
+    }
+
+    /**
+     * Ciphers a plain text using the Vernam cipher, starting at a given position of the key.
+     * <p>
+     * This is used when a text is ciphered piece by piece : the first character of {@code text} is XORed with the
+     * character of the key at {@code offset}, as if {@code text} started {@code offset} characters into the whole
+     * text.
+     *
+     * @param text   the text to cipher
+     * @param key    the key used for ciphering
+     * @param offset the position of {@code text} in the whole text
+     * @return the ciphered string
+     */
+    public static String cipher(String text, char[] key, long offset) {
         if (key.length == 0) throw new IllegalArgumentException("Cannot cipher with an empty key");
-        StringBuilder sb = new StringBuilder();
+        try (Metrics.Timer timer = Metrics.time(Phase.APPLY_KEY)) {
+            timer.bytes(text.length());
+            return xor(text, key, offset);
+        }
+    }
+
+    private static String xor(String text, char[] key, long offset) {
+        int k = (int) Math.floorMod(offset, (long) key.length);
 
+        if (Kernels.VECTOR) {
+            char[] out = new char[text.length()];
+            VectorKernels.xor(text.toCharArray(), out, 0, out.length, key, k);
+            return new String(out);
+        }
+
+        StringBuilder sb = new StringBuilder(text.length());
         for (int i = 0; i < text.length(); i++) {
             int c = text.charAt(i);
             // the next operation (^) is a xor. We apply it char per char to avoid one more cast (from byte)
-            c = key[i % key.length] ^ c;
+            c = key[k] ^ c;
             sb.appendCodePoint(c);
+            if (++k == key.length) k = 0;
         }
         return sb.toString();
     }
 
+    /**
+     * Ciphers a plain text using the Vernam cipher, on several threads.
+     * <p>
+     * The text is split in chunks whose length is a multiple of the key's, so that each chunk starts with the first
+     * character of the key. They are ciphered in parallel into a shared buffer. The result is the same as
+     * {@link #cipher(String, char[])}.
+     *
+     * @param text the text to cipher
+     * @param key  the key used for ciphering
+     * @param pool the pool the chunks are ciphered on
+     * @return the ciphered string
+     */
+    public static String cipher(String text, char[] key, ForkJoinPool pool) {
+        if (key.length == 0) throw new IllegalArgumentException("Cannot cipher with an empty key");
+        try (Metrics.Timer timer = Metrics.time(Phase.APPLY_KEY)) {
+            timer.bytes(text.length());
+            return xor(text, key, pool);
+        }
+    }
+
+    private static String xor(String text, char[] key, ForkJoinPool pool) {
+        char[] out = new char[text.length()];
+
+        if (Kernels.VECTOR) {
+            char[] in = text.toCharArray();
+            Chunks.forEach(pool, in.length, key.length, (from, to) -> VectorKernels.xor(in, out, from, to, key, 0));
+            return new String(out);
+        }
+
+        Chunks.forEach(pool, text.length(), key.length, (from, to) -> {
+            int k = 0;
+            for (int i = from; i < to; i++) {
+                out[i] = (char) (key[k] ^ text.charAt(i));
+                if (++k == key.length) k = 0;
+            }
+        });
+
+        return new String(out);
+    }
+
+    /**
+     * Ciphers in place a range of bytes using the Vernam cipher.
+     * <p>
+     * This does the same as {@link #cipher(String, char[], long)} on bytes, without allocating anything.
+     * The first byte is XORed with the byte of the key at {@code keyPos}, and the position of the key to use for
+     * the next range is returned, so that a text can be ciphered buffer by buffer.
+     * As XOR is its own inverse, this also deciphers.
+     *
+     * @param buf    the buffer holding the text
+     * @param off    the index of the first byte to cipher
+     * @param len    the amount of bytes to cipher
+     * @param key    the key used for ciphering
+     * @param keyPos the position in the key of the first byte, between 0 and {@code key.length - 1}
+     * @return the position in the key of the byte following the range
+     */
+    public static int cipher(byte[] buf, int off, int len, byte[] key, int keyPos) {
+        if (key.length == 0) throw new IllegalArgumentException("Cannot cipher with an empty key");
+        if (Kernels.VECTOR) return VectorKernels.xor(buf, off, len, key, keyPos);
+
+        int i = off;
+        int end = off + len;
+        int k = keyPos;
+
+        // rather than wrapping the key position at every byte, we XOR whole runs of the key
+        while (i < end) {
+            int run = Math.min(end - i, key.length - k);
+            for (int j = 0; j < run; j++) {
+                buf[i + j] ^= key[k + j];
+            }
+            i += run;
+            k += run;
+            if (k == key.length) k = 0;
+        }
+
+        return k;
+    }
+
+    /**
+     * Ciphers in place the remaining bytes of a buffer using the Vernam cipher.
+     * <p>
+     * The bytes between the position and the limit of {@code buf} are ciphered. Its position is left untouched.
+     *
+     * @param buf    the buffer holding the text
+     * @param key    the key used for ciphering
+     * @param keyPos the position in the key of the first byte, between 0 and {@code key.length - 1}
+     * @return the position in the key of the byte following the range
+     * @see #cipher(byte[], int, int, byte[], int)
+     */
+    public static int cipher(ByteBuffer buf, byte[] key, int keyPos) {
+        if (buf.hasArray())
+            return cipher(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), key, keyPos);
+        if (key.length == 0) throw new IllegalArgumentException("Cannot cipher with an empty key");
+
+        int k = keyPos;
+        for (int i = buf.position(), end = buf.limit(); i < end; i++) {
+            buf.put(i, (byte) (buf.get(i) ^ key[k]));
+            if (++k == key.length) k = 0;
+        }
+        return k;
+    }
+
     /**
      * Deciphers a text ciphered with the Vernam cipher, with a given key.
      * <p>
@@ -41,6 +186,19 @@ public class Vernam {
         return cipher(text, key);
     }
 
+    /**
+     * Deciphers a text ciphered with the Vernam cipher, with a given key, on several threads.
+     *
+     * @param text the text to decipher
+     * @param key  the key used to cipher
+     * @param pool the pool the text is deciphered on
+     * @return the plain text
+     * @see #cipher(String, char[], ForkJoinPool)
+     */
+    public static String decipher(String text, char[] key, ForkJoinPool pool) {
+        return cipher(text, key, pool);
+    }
+
     /**
      * Deciphers a text ciphered with the Vernam cipher, without the key.
      * <p>
@@ -64,128 +222,264 @@ public class Vernam {
      * @return the plain text (hopefully)
      */
     public static String decipher(String text) {
-        // we first try to determine the key's length
-        int lenMax = getBestKeyLength(text);
-        System.out.println("[VERNAM] Key length determined to be " + lenMax);
+        return decipher(text, KeyLengthAnalyzer.DEFAULT_MAX_PERIOD);
+    }
 
-        // if it couldn't be determined, it's no use going further
-        if (lenMax == 0) return "Undecipherable.";
+    /**
+     * Deciphers a text ciphered with the Vernam cipher, without the key, trying key lengths up to a given one.
+     *
+     * @param text         the text to decipher
+     * @param maxKeyLength the longest key length to try
+     * @return the plain text (hopefully)
+     * @see #decipher(String)
+     */
+    public static String decipher(String text, int maxKeyLength) {
+        return decipher(text, maxKeyLength, Profile.ENGLISH);
+    }
 
-        // next we need to guess which chars were used to form the key
-        char[] keyParts = new char[lenMax];
+    /**
+     * Deciphers a text ciphered with the Vernam cipher, without the key, comparing it to the statistics of a given
+     * language.
+     *
+     * @param text         the text to decipher
+     * @param maxKeyLength the longest key length to try
+     * @param profile      the language of the plain text
+     * @return the plain text (hopefully)
+     * @see #decipher(String)
+     */
+    public static String decipher(String text, int maxKeyLength, Profile profile) {
+        char[] key = crackKey(text, maxKeyLength, profile);
+        return applyCrackedKey(text, key, null);
+    }
+
+    /**
+     * Finds the key of a text ciphered with the Vernam cipher.
+     * <p>
+     * The key's length is determined first, then each character of the key is found by frequency analysis on its
+     * column. See {@link #decipher(String)} for the assumptions this makes.
+     *
+     * @param text         the ciphered text
+     * @param maxKeyLength the longest key length to try
+     * @return the key (hopefully), which is empty if its length couldn't be determined
+     */
+    public static char[] crackKey(CharSequence text, int maxKeyLength) {
+        return crackKey(text, maxKeyLength, Profile.ENGLISH);
+    }
 
-        System.out.println("[VERNAM] Building key...");
+    /**
+     * Finds the key of a text ciphered with the Vernam cipher, given the language of the plain text.
+     *
+     * @param text         the ciphered text
+     * @param maxKeyLength the longest key length to try
+     * @param profile      the language of the plain text
+     * @return the key (hopefully), which is empty if its length couldn't be determined
+     * @see #crackKey(CharSequence, int)
+     */
+    public static char[] crackKey(CharSequence text, int maxKeyLength, Profile profile) {
+        // we first try to determine the key's length
+        int lenMax = KeyLengthAnalyzer.best(KeyLengthAnalyzer.rank(text, maxKeyLength, ForkJoinPool.commonPool(),
+                profile.indexOfCoincidence()));
 
-        // so for each char of the key
-        for (int i = 0; i < lenMax; i++) {
+        return solveKey(text, lenMax, profile);
+    }
 
-            // we get the corresponding column
-            StringBuilder sb = new StringBuilder();
-            for (int j = i; j < text.length(); j += lenMax) {
-                sb.append(text.charAt(j));
-            }
+    /**
+     * Finds the key of a text ciphered with the Vernam cipher once its length is known.
+     * <p>
+     * Each column is ranked on its own, then the best few characters of each are told apart by the quadgrams of the
+     * start of the text they decipher, see {@link Refiner}.
+     *
+     * @param text      the ciphered text
+     * @param keyLength the length of the key, as picked by {@link KeyLengthAnalyzer#best(List)}
+     * @param profile   the language of the plain text
+     * @return the key (hopefully), which is empty if the key length is 0
+     * @see #crackKey(CharSequence, int)
+     */
+    public static char[] solveKey(CharSequence text, int keyLength, Profile profile) {
+        // next we need to guess which chars were used to form the key
+        char[][] choices = new char[keyLength][];
 
-            String column = sb.toString();
+        // so for each char of the key
+        SymbolHistogram histogram = new SymbolHistogram();
+        for (int i = 0; i < keyLength; i++) {
 
-            // given that column, we guess what's the best key part possible
-            keyParts[i] = getBestKeyPart(column);
-            System.out.print(keyParts[i]);
+            // given the corresponding column, we guess what are the best key parts possible
+            choices[i] = getBestKeyParts(histogram, text, i, keyLength, profile);
         }
 
-        System.out.println("\n[VERNAM] Applying key...");
-        return decipher(text, keyParts);
+        return refine(text, choices, profile);
+    }
+
+    /**
+     * Picks the best of the key parts of each column by the quadgrams of the start of the text they decipher.
+     *
+     * @see Refiner
+     */
+    private static char[] refine(CharSequence text, char[][] choices, Profile profile) {
+        return Metrics.time(Phase.KEY_SEARCH, () -> Refiner.refine(text, choices, (c, k) -> (char) (c ^ k), profile));
     }
 
     /**
-     * Determines the key used to cipher a column using Vernam.
+     * Deciphers a text ciphered with the Vernam cipher, without the key, on several threads.
      * <p>
-     * This method ciphers the column with each character possible, and performs a chi-square test.
-     * The best possible key is the key that resulted in the minimal chi-square value.
+     * Key lengths are analysed in parallel, then the columns of the key are each solved independently, in parallel,
+     * and the key is applied in parallel.
+     *
+     * @param text         the text to decipher
+     * @param maxKeyLength the longest key length to try
+     * @param pool         the pool the text is analysed and deciphered on
+     * @return the plain text (hopefully)
+     * @see #decipher(String)
+     */
+    public static String decipher(String text, int maxKeyLength, ForkJoinPool pool) {
+        return decipher(text, maxKeyLength, pool, Profile.ENGLISH);
+    }
+
+    /**
+     * Deciphers a text ciphered with the Vernam cipher, without the key, on several threads, comparing it to the
+     * statistics of a given language.
+     *
+     * @param text         the text to decipher
+     * @param maxKeyLength the longest key length to try
+     * @param pool         the pool the text is analysed and deciphered on
+     * @param profile      the language of the plain text
+     * @return the plain text (hopefully)
+     * @see #decipher(String, int, ForkJoinPool)
+     */
+    public static String decipher(String text, int maxKeyLength, ForkJoinPool pool, Profile profile) {
+        char[] key = crackKey(text, maxKeyLength, pool, profile);
+        return applyCrackedKey(text, key, pool);
+    }
+
+    /**
+     * Finds the key of a text ciphered with the Vernam cipher, on several threads.
      * <p>
-     * N.B. : this method assumes that the given column (a subsequence made of 0, k, 2k, ... characters,
-     * where k is the length of the key) is correct, meaning that it is mono-alphabetically ciphered.
+     * Key lengths are analysed in parallel, then the columns of the key are each solved independently, in parallel.
      *
-     * @param column the column which key needs to be determined
-     * @return the character used to cipher the column
+     * @param text         the ciphered text
+     * @param maxKeyLength the longest key length to try
+     * @param pool         the pool the text is analysed on
+     * @return the key (hopefully), which is empty if its length couldn't be determined
+     * @see #crackKey(CharSequence, int)
      */
-    private static char getBestKeyPart(String column) {
-        char candidate = 0;
+    public static char[] crackKey(CharSequence text, int maxKeyLength, ForkJoinPool pool) {
+        return crackKey(text, maxKeyLength, pool, Profile.ENGLISH);
+    }
 
-        // and we perform a chi square test for each possible character that key part could have been
-        for (long c = 0; c <= Character.MAX_VALUE; c++) { // that's a very long loop
-            String tried = decipher(column, new char[]{(char) c});
-            double chiSq = Util.chiSquare(tried);
-            if (chiSq < Double.MAX_VALUE) {
-                candidate = (char) c;
-                return candidate;
-                /*
-                    if we get here, it means we found a key that would NOT lead to ANY non-printable characters
-                    with a large enough text, we can assume that the first correct ChiSq is the best one.
-                    We can make that assumption as this deciphering method doesn't even work
-                    for smaller texts.
-                 */
-            }
+    /**
+     * Finds the key of a text ciphered with the Vernam cipher, on several threads, given the language of the plain
+     * text.
+     *
+     * @param text         the ciphered text
+     * @param maxKeyLength the longest key length to try
+     * @param pool         the pool the text is analysed on
+     * @param profile      the language of the plain text
+     * @return the key (hopefully), which is empty if its length couldn't be determined
+     * @see #crackKey(CharSequence, int, ForkJoinPool)
+     */
+    public static char[] crackKey(CharSequence text, int maxKeyLength, ForkJoinPool pool, Profile profile) {
+        int lenMax = KeyLengthAnalyzer.best(KeyLengthAnalyzer.rank(text, maxKeyLength, pool,
+                profile.indexOfCoincidence()));
+        char[][] choices = new char[lenMax][];
+
+        // the columns are spread over the threads, each thread solving every nth column with its own histogram
+        int threads = Math.min(lenMax, pool.getParallelism());
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            tasks.add(pool.submit(() -> {
+                SymbolHistogram histogram = new SymbolHistogram();
+                for (int i = first; i < lenMax; i += threads) {
+                    choices[i] = getBestKeyParts(histogram, text, i, lenMax, profile);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
         }
 
-        return candidate;
+        return refine(text, choices, profile);
     }
 
     /**
-     * Determines what is the correct Vernam key length given a ciphered string.
-     * <p>
-     * This method will try every single possible key length and compute the index of coincidence
-     * for a column made with that key length. A column is a subsequence made of 0, k, 2k, ... characters,
-     * where k is the length of the key.
-     * <p>
-     * The best key length is the first length that approximates close enough to the standard English index of
-     * coincidence.
-     * <p>
-     * N.B. : if such a key length couldn't be found, most likely because the key is too large compared to the text,
-     * it will return 0.
+     * Reports a cracked key and deciphers the text with it.
      *
-     * @param text the ciphered string which key length needs to be determined
-     * @return the best approximation of the key's length, or 0 if it couldn't be determined
+     * @param text the ciphered text
+     * @param key  the cracked key, empty if its length couldn't be determined
+     * @param pool the pool the text is deciphered on, or null to decipher it on the current thread
+     * @return the plain text, or "Undecipherable." if the key is empty
      */
-    private static int getBestKeyLength(String text) {
-        final double IDEAL_CI = 0.065;
-        final double EPSILON = 0.005;
+    private static String applyCrackedKey(String text, char[] key, ForkJoinPool pool) {
+        LOG.fine("[VERNAM] Key length determined to be " + key.length);
 
-        for (int i = 1; i < text.length(); i++) { // for each possible key length
+        // if it couldn't be determined, it's no use going further
+        if (key.length == 0) return "Undecipherable.";
 
-            StringBuilder sb = new StringBuilder();
-            for (int j = 0; j < text.length(); j += i) {
-                sb.append(text.charAt(j)); // we construct the column
-            }
+        LOG.fine(() -> "[VERNAM] Key found : " + new String(key));
+        LOG.fine("[VERNAM] Applying key...");
+        return pool == null ? decipher(text, key) : decipher(text, key, pool);
+    }
 
-            String toWork = sb.toString();
-            var freq = Util.getFreq(toWork); // we get its character counts
+    /**
+     * Ranks the characters that could have been used to cipher a column using Vernam.
+     * <p>
+     * A column is a subsequence made of the characters at {@code start}, {@code start + k}, ... where k is the length
+     * of the key. Its symbols are counted once, then only the characters that decipher every symbol to a lowercase
+     * English letter are kept and scored with a chi-square test on the letter counts they would produce.
+     * <p>
+     * N.B. : this method assumes that the given column is correct, meaning that it is mono-alphabetically ciphered.
+     *
+     * @param text      the ciphered text
+     * @param start     the index of the first character of the column, which is its position in the key
+     * @param keyLength the length of the key
+     * @return the possible key characters, from the most to the least likely, which is empty if none fits
+     */
+    public static List<Candidate> crackColumn(CharSequence text, int start, int keyLength) {
+        return crackColumn(text, start, keyLength, Profile.ENGLISH);
+    }
 
-            int sum = 0;
-            for (var cnt : freq.values()) {
-                sum += cnt * (cnt - 1);
-            }
+    /**
+     * Ranks the characters that could have been used to cipher a column using Vernam, given the language of the plain
+     * text.
+     *
+     * @param text      the ciphered text
+     * @param start     the index of the first character of the column, which is its position in the key
+     * @param keyLength the length of the key
+     * @param profile   the language of the plain text
+     * @return the possible key characters, from the most to the least likely, which is empty if none fits
+     * @see #crackColumn(CharSequence, int, int)
+     */
+    public static List<Candidate> crackColumn(CharSequence text, int start, int keyLength, Profile profile) {
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_SEARCH)) {
+            timer.bytes(columnLength(text, start, keyLength));
+            return new SymbolHistogram().count(text, start, keyLength).rank(profile.frequencies());
+        }
+    }
 
-            double ci = 1.0 * sum / (toWork.length() * (toWork.length() - 1)); // and we get the CI for this column
-            if (Math.abs(ci - IDEAL_CI) < EPSILON) { // if it's close enough
-                return i; // we found it
-            }
-            /*
-            Getting the largest CI will work, but as we try higher and higher keys, the subsequence used
-            to compute the CI gets smaller and smaller, which leads to CIs being possibly bigger.
-            And doing a frequency analysis on absurdly high key lengths DOES work, but it will be done
-            on very small subsequences, and frequency analysis works better on larger texts.
-
-            On the other hand, if we pick the first one that seems to be close enough, we get multiple advantages :
-                1. early return -> more efficient
-                2. usually closer to the real key length
-                3. as the key is smaller, the frequency analysis will lead to better results
-            But it has some trade-offs :
-                1. we have to choose a good epsilon
-                2. it may lead to wrong results
-                    example : key = "aaaaab" would have a high chance of returning 1 as key length
-             */
+    /**
+     * Determines the best few keys that could have been used to cipher a column using Vernam.
+     * <p>
+     * The best possible keys are the keys that resulted in the minimal chi-square values.
+     *
+     * @param histogram a histogram to count the column with, which is cleared first
+     * @param text      the ciphered text
+     * @param start     the index of the first character of the column
+     * @param keyLength the length of the key
+     * @param profile   the language of the plain text
+     * @return the characters that could have been used to cipher the column, from the most to the least likely, which
+     * is empty if none deciphers it to letters
+     * @see #crackColumn(CharSequence, int, int)
+     */
+    private static char[] getBestKeyParts(SymbolHistogram histogram, CharSequence text, int start, int keyLength,
+                                          Profile profile) {
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_SEARCH)) {
+            timer.bytes(columnLength(text, start, keyLength));
+            histogram.clear();
+            return Refiner.choices(histogram.count(text, start, keyLength).rank(profile.frequencies()), 0);
         }
+    }
 
-        return 0;
+    private static int columnLength(CharSequence text, int start, int keyLength) {
+        return Math.max(0, (text.length() - start + keyLength - 1) / keyLength);
     }
 }
@@ -0,0 +1,220 @@
+package cipher;
+
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+public class Vigenere {
+
+    private static final Logger LOG = Logger.getLogger(Vigenere.class.getName());
+
+    /**
+     * The tabula recta : the letter at row k and column p is the letter p shifted by k, as an ASCII code.
+     * Deciphering with the key letter k is ciphering with the row {@code 26 - k}.
+     */
+    private static final byte[][] TABULA_RECTA = new byte[26][26];
+
+    static {
+        for (int k = 0; k < 26; k++) {
+            for (int p = 0; p < 26; p++) {
+                TABULA_RECTA[k][p] = (byte) ((p + k) % 26 + 'a');
+            }
+        }
+    }
+
+    /**
+     * Ciphers a normalized lowercase plain text using the Vigenère cipher.
+     * <p>
+     * The Vigenère cipher is a Caesar cipher whose shift changes with each letter : the ith letter of the text is
+     * shifted by the ith letter of the key, 'a' shifting by 0, 'b' by 1, ... If the key is shorter than the text, it
+     * is repeated. A key of a single letter is thus a Caesar cipher.
+     * <p>
+     * N.B. : The text is assumed to be preprocessed by {@code proc.Preprocess}. Other characters are left as is, but
+     * still use up a letter of the key.
+     *
+     * @param text the text to cipher
+     * @param key  the key used for ciphering, made of lowercase letters
+     * @return the ciphered string
+     * @throws IllegalArgumentException if the key is empty or holds anything but lowercase letters
+     */
+    public static String cipher(String text, char[] key) {
+        return cipher(text, key, 0);
+    }
+
+    /**
+     * Ciphers a plain text using the Vigenère cipher, starting at a given position of the key.
+     * <p>
+     * This is used when a text is ciphered piece by piece, as with {@link Vernam#cipher(String, char[], long)}.
+     *
+     * @param text   the text to cipher
+     * @param key    the key used for ciphering, made of lowercase letters
+     * @param offset the position of {@code text} in the whole text
+     * @return the ciphered string
+     * @throws IllegalArgumentException if the key is empty or holds anything but lowercase letters
+     */
+    public static String cipher(String text, char[] key, long offset) {
+        return shift(text, rows(key, false), offset);
+    }
+
+    /**
+     * Deciphers a text ciphered with the Vigenère cipher using a provided key.
+     *
+     * @param text the text to decipher
+     * @param key  the key used to cipher, made of lowercase letters
+     * @return the plain text
+     * @throws IllegalArgumentException if the key is empty or holds anything but lowercase letters
+     */
+    public static String decipher(String text, char[] key) {
+        return decipher(text, key, 0);
+    }
+
+    /**
+     * Deciphers a text ciphered with the Vigenère cipher, starting at a given position of the key.
+     *
+     * @param text   the text to decipher
+     * @param key    the key used to cipher, made of lowercase letters
+     * @param offset the position of {@code text} in the whole text
+     * @return the plain text
+     * @throws IllegalArgumentException if the key is empty or holds anything but lowercase letters
+     * @see #cipher(String, char[], long)
+     */
+    public static String decipher(String text, char[] key, long offset) {
+        return shift(text, rows(key, true), offset);
+    }
+
+    /**
+     * Deciphers a text ciphered with the Vigenère cipher, without the key.
+     * <p>
+     * The length of the key is found as for Vernam, by the index of coincidence of the columns. Each column is then
+     * a Caesar ciphered text, cracked from its letter counts. See {@link Vernam#decipher(String)} for the assumptions
+     * this makes.
+     *
+     * @param text the text to decipher
+     * @return the plain text (hopefully)
+     */
+    public static String decipher(String text) {
+        return decipher(text, KeyLengthAnalyzer.DEFAULT_MAX_PERIOD, Profile.ENGLISH);
+    }
+
+    /**
+     * Deciphers a text ciphered with the Vigenère cipher, without the key, trying key lengths up to a given one and
+     * comparing it to a given language.
+     *
+     * @param text         the text to decipher
+     * @param maxKeyLength the longest key length to try
+     * @param profile      the language of the plain text
+     * @return the plain text (hopefully), or "Undecipherable." if the key's length couldn't be determined
+     * @see #decipher(String)
+     */
+    public static String decipher(String text, int maxKeyLength, Profile profile) {
+        char[] key = crackKey(text, maxKeyLength, profile);
+        LOG.fine("[VIGENERE] Key length determined to be " + key.length);
+
+        if (key.length == 0) return "Undecipherable.";
+
+        LOG.fine(() -> "[VIGENERE] Key found : " + new String(key));
+        LOG.fine("[VIGENERE] Applying key...");
+        return decipher(text, key);
+    }
+
+    /**
+     * Finds the key of a text ciphered with the Vigenère cipher.
+     *
+     * @param text         the ciphered text
+     * @param maxKeyLength the longest key length to try
+     * @param profile      the language of the plain text
+     * @return the key (hopefully), which is empty if its length couldn't be determined
+     * @see #decipher(String)
+     */
+    public static char[] crackKey(CharSequence text, int maxKeyLength, Profile profile) {
+        int keyLength = KeyLengthAnalyzer.best(KeyLengthAnalyzer.rank(text, maxKeyLength, ForkJoinPool.commonPool(),
+                profile.indexOfCoincidence()));
+        return solveKey(text, keyLength, profile);
+    }
+
+    /**
+     * Finds the key of a text ciphered with the Vigenère cipher once its length is known.
+     * <p>
+     * A single histogram counts the letters of each column in turn. The 26 shifts of a column are then scored by
+     * rotating its counts, as {@link Caesar#crack(Histogram, Profile)} does, without deciphering anything : the whole
+     * key is found in a single pass over the text. The best few letters of each column are then told apart by the
+     * quadgrams of the start of the text they decipher, see {@link Refiner}.
+     * <p>
+     * N.B. : The characters that aren't letters are left as is by the cipher, so only the letters of a column are
+     * scored. They still use up a letter of the key, and thus stay in the text to keep the columns aligned.
+     *
+     * @param text      the ciphered text
+     * @param keyLength the length of the key
+     * @param profile   the language of the plain text
+     * @return the key (hopefully)
+     */
+    public static char[] solveKey(CharSequence text, int keyLength, Profile profile) {
+        char[][] choices = new char[keyLength][];
+        Histogram histogram = new Histogram();
+
+        for (int i = 0; i < keyLength; i++) {
+            try (Metrics.Timer timer = Metrics.time(Phase.KEY_SEARCH)) {
+                timer.bytes((text.length() - i + keyLength - 1) / keyLength);
+                histogram.clear();
+                histogram.countColumn(text, i, keyLength);
+                choices[i] = Refiner.choices(Caesar.crack(histogram, profile), 'a');
+            }
+        }
+
+        // the key letters are shifts from 'a'
+        return Metrics.time(Phase.KEY_SEARCH,
+                () -> Refiner.refine(text, choices, (c, k) -> Caesar.unshift(c, (char) (k - 'a')), profile));
+    }
+
+    /**
+     * Ranks the letters that could have been used to cipher a column using Vigenère, from the letters of the column.
+     *
+     * @param text      the ciphered text
+     * @param start     the index of the first character of the column, which is its position in the key
+     * @param keyLength the length of the key
+     * @param profile   the language of the plain text
+     * @return the 26 possible key letters as their shift, from the most to the least likely
+     */
+    public static List<Candidate> crackColumn(CharSequence text, int start, int keyLength, Profile profile) {
+        return Caesar.crack(new Histogram().countColumn(text, start, keyLength), profile);
+    }
+
+    /**
+     * Picks the row of the tabula recta of each letter of a key.
+     */
+    private static byte[][] rows(char[] key, boolean inverse) {
+        if (key.length == 0) throw new IllegalArgumentException("Cannot cipher with an empty key");
+
+        byte[][] rows = new byte[key.length][];
+        for (int i = 0; i < key.length; i++) {
+            int shift = key[i] - 'a';
+            if (shift < 0 || shift >= 26)
+                throw new IllegalArgumentException("A Vigenère key must be made of lowercase letters");
+            rows[i] = TABULA_RECTA[inverse ? (26 - shift) % 26 : shift];
+        }
+        return rows;
+    }
+
+    /**
+     * Looks every letter of a text up in the rows of the tabula recta picked by a key.
+     */
+    private static String shift(String text, byte[][] rows, long offset) {
+        try (Metrics.Timer timer = Metrics.time(Phase.APPLY_KEY)) {
+            timer.bytes(text.length());
+            char[] out = new char[text.length()];
+
+            int k = (int) Math.floorMod(offset, (long) rows.length);
+            for (int i = 0; i < out.length; i++) {
+                char c = text.charAt(i);
+                int letter = c - 'a';
+                out[i] = letter >= 0 && letter < 26 ? (char) rows[k][letter] : c;
+                if (++k == rows.length) k = 0;
+            }
+
+            return new String(out);
+        }
+    }
+}
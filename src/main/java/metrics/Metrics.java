@@ -0,0 +1,273 @@
+package metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Times the phases of processing texts and counts what they process, for the whole process.
+ * <p>
+ * A phase is timed by opening a {@link Timer} around it :
+ * <pre>{@code
+ * try (Metrics.Timer timer = Metrics.time(Phase.READ)) {
+ *     text = Files.readString(path);
+ *     timer.bytes(text.length());
+ * }
+ * }</pre>
+ * or, when there is nothing to count, with {@link #time(Phase, Supplier)}. Every run of a phase is added to its
+ * totals, and recorded as a {@link PhaseEvent} if Flight Recorder is on. Phases run on several threads at once add up
+ * the time of each thread.
+ * <p>
+ * N.B. : timers are meant to surround whole phases, not the inner loops of a phase : each one costs two clock reads
+ * and an allocation.
+ */
+public final class Metrics {
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final LongAdder[] RUNS = adders();
+    private static final LongAdder[] NANOS = adders();
+    private static final LongAdder[] BYTES = adders();
+    private static final LongAdder CANDIDATES = new LongAdder();
+    private static volatile String key;
+
+    private Metrics() {
+    }
+
+    /**
+     * The timing of one run of a phase, which ends when it is closed.
+     */
+    public static final class Timer implements AutoCloseable {
+        private final Phase phase;
+        private final PhaseEvent event = new PhaseEvent();
+        private final long start;
+        private long bytes;
+
+        private Timer(Phase phase) {
+            this.phase = phase;
+            event.begin();
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Sets how much the phase processed.
+         *
+         * @param amount the amount of characters or bytes processed
+         * @return this timer
+         */
+        public Timer bytes(long amount) {
+            this.bytes = amount;
+            return this;
+        }
+
+        /**
+         * Ends the phase, adding it to the totals.
+         */
+        @Override
+        public void close() {
+            int i = phase.ordinal();
+            RUNS[i].increment();
+            NANOS[i].add(System.nanoTime() - start);
+            BYTES[i].add(bytes);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.label();
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Starts timing a run of a phase.
+     *
+     * @param phase the phase
+     * @return the timer, to be closed once the phase is over
+     */
+    public static Timer time(Phase phase) {
+        return new Timer(phase);
+    }
+
+    /**
+     * Times a run of a phase that computes a value, when there is no amount to report.
+     *
+     * @param phase the phase
+     * @param body  the work of the phase
+     * @param <T>   the type of the computed value
+     * @return the value computed by {@code body}
+     */
+    public static <T> T time(Phase phase, Supplier<T> body) {
+        Timer timer = time(phase);
+        try {
+            return body.get();
+        } finally {
+            timer.close();
+        }
+    }
+
+    /**
+     * Counts candidates that were evaluated : keys, key characters or key lengths.
+     *
+     * @param amount the amount of evaluated candidates
+     */
+    public static void addCandidates(long amount) {
+        CANDIDATES.add(amount);
+    }
+
+    /**
+     * Records the key a text was ciphered or deciphered with, so that it is part of the report.
+     *
+     * @param key the key, provided or cracked, which is "" if it couldn't be cracked
+     */
+    public static void key(String key) {
+        Metrics.key = key;
+    }
+
+    /**
+     * Returns the last recorded key.
+     *
+     * @return the key, or null if none was recorded
+     */
+    public static String key() {
+        return key;
+    }
+
+    /**
+     * Returns how many times a phase was run.
+     *
+     * @param phase the phase
+     * @return the amount of runs
+     */
+    public static long runs(Phase phase) {
+        return RUNS[phase.ordinal()].sum();
+    }
+
+    /**
+     * Returns the time spent in a phase.
+     *
+     * @param phase the phase
+     * @return the total time of its runs, in nanoseconds
+     */
+    public static long nanos(Phase phase) {
+        return NANOS[phase.ordinal()].sum();
+    }
+
+    /**
+     * Returns how much a phase processed.
+     *
+     * @param phase the phase
+     * @return the total amount of characters or bytes processed by its runs
+     */
+    public static long bytes(Phase phase) {
+        return BYTES[phase.ordinal()].sum();
+    }
+
+    /**
+     * Returns how many candidates were evaluated.
+     *
+     * @return the amount of evaluated candidates
+     */
+    public static long candidates() {
+        return CANDIDATES.sum();
+    }
+
+    /**
+     * Returns the most heap the process has used so far, as the sum of the peak usage of each heap pool.
+     *
+     * @return the peak heap usage, in bytes
+     */
+    public static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    /**
+     * Returns the most physical memory the process has held so far, heap and off-heap included.
+     * <p>
+     * N.B. : this is read from {@code /proc/self/status}, so it is only known on Linux.
+     *
+     * @return the peak resident set size, in bytes, or -1 if it isn't known
+     */
+    public static long peakRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                // e.g. "VmHWM:     52340 kB"
+                if (line.startsWith("VmHWM:")) return 1024 * Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        } catch (IOException | NumberFormatException ignored) {
+        }
+        return -1;
+    }
+
+    /**
+     * Resets every total to 0.
+     */
+    public static void reset() {
+        for (int i = 0; i < PHASES.length; i++) {
+            RUNS[i].reset();
+            NANOS[i].reset();
+            BYTES[i].reset();
+        }
+        CANDIDATES.reset();
+        key = null;
+    }
+
+    /**
+     * Writes the totals as a JSON object, e.g.
+     * {@code {"phases":{"read":{"runs":1,"millis":2.5,"bytes":1024},...},"candidates":26,
+     * "memory":{"peakHeap":8388608,"peakRss":52428800},"key":"3"}}. Phases that were never run are left out, and so is
+     * the key if none was recorded. The characters of the key that aren't printable ASCII are escaped, so that any key
+     * reads back as it is.
+     *
+     * @return the JSON object
+     */
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\"phases\":{");
+        boolean first = true;
+        for (Phase phase : PHASES) {
+            if (runs(phase) == 0) continue;
+            if (!first) json.append(',');
+            first = false;
+
+            json.append('"').append(phase.label()).append("\":{")
+                    .append("\"runs\":").append(runs(phase))
+                    .append(",\"millis\":").append(String.format(Locale.ROOT, "%.3f", nanos(phase) / 1e6))
+                    .append(",\"bytes\":").append(bytes(phase))
+                    .append('}');
+        }
+        json.append("},\"candidates\":").append(candidates())
+                .append(",\"memory\":{\"peakHeap\":").append(peakHeap())
+                .append(",\"peakRss\":").append(peakRss())
+                .append('}');
+
+        String key = Metrics.key;
+        if (key != null) {
+            json.append(",\"key\":\"");
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                if (c == '"' || c == '\\') json.append('\\').append(c);
+                else if (c < 0x20 || c > 0x7E) json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                else json.append(c);
+            }
+            json.append('"');
+        }
+        return json.append('}').toString();
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[PHASES.length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,46 @@
+package metrics;
+
+/**
+ * The phases the processing of a text is split in, as timed by {@link Metrics}.
+ */
+public enum Phase {
+    /**
+     * Reading the input file.
+     */
+    READ("read"),
+    /**
+     * Sanitizing the plain text to lowercase letters.
+     */
+    SANITIZE("sanitize"),
+    /**
+     * Ranking the possible lengths of a Vernam key.
+     */
+    KEY_LENGTH("keyLength"),
+    /**
+     * Finding the key, or a character of the key for each column of a Vernam text.
+     */
+    KEY_SEARCH("keySearch"),
+    /**
+     * Ciphering or deciphering the text with its key.
+     */
+    APPLY_KEY("applyKey"),
+    /**
+     * Writing the output file.
+     */
+    WRITE("write");
+
+    private final String label;
+
+    Phase(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the name of the phase, as written in the metrics and the Flight Recorder events.
+     *
+     * @return the name of the phase
+     */
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,31 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event recording one run of a {@link Phase}.
+ * <p>
+ * It is only recorded when a recording is running, e.g. with {@code -XX:StartFlightRecording}, and can be found under
+ * the freqanalysis category.
+ */
+@Name("freqanalysis.Phase")
+@Label("Phase")
+@Category("freqanalysis")
+@Description("A phase of ciphering, deciphering or cracking a text")
+@StackTrace(false)
+class PhaseEvent extends Event {
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Processed")
+    @Description("The amount of characters or bytes processed")
+    @DataAmount(DataAmount.BYTES)
+    long bytes;
+}
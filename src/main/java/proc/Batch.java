@@ -0,0 +1,212 @@
+package proc;
+
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class Batch {
+
+    /**
+     * The name of the results manifest written in the output directory.
+     */
+    public static final String RESULTS = "results.csv";
+
+    /**
+     * The result of processing one file of a batch.
+     *
+     * @param file           the processed file
+     * @param cipher         the cipher used
+     * @param key            the key used, cracked if it wasn't provided, or "" if it couldn't be
+     * @param score          the chi-square of the deciphered text against English, NaN when ciphering
+     * @param durationMillis how long processing the file took
+     * @param error          what went wrong, or null if the file was processed
+     */
+    public record Result(Path file, String cipher, String key, double score, long durationMillis, String error) {
+    }
+
+    /**
+     * Lists the files to process.
+     * <p>
+     * If {@code input} is a directory, every regular file directly in it is listed, except the results manifest of a
+     * previous batch. Otherwise, it is read as a manifest holding one path per line, relative paths being resolved
+     * against the manifest's directory. Blank lines are ignored.
+     *
+     * @param input a directory or a manifest
+     * @return the files to process, sorted by name for directories, in order for manifests
+     * @throws IOException if the directory or the manifest couldn't be read
+     */
+    public static List<Path> listInputs(Path input) throws IOException {
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.list(input)) {
+                return files.filter(Files::isRegularFile)
+                        .filter(file -> !file.getFileName().toString().equals(RESULTS))
+                        .sorted()
+                        .toList();
+            }
+        }
+
+        Path base = input.toAbsolutePath().getParent();
+        List<Path> files = new ArrayList<>();
+        for (String line : Files.readAllLines(input, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) files.add(base.resolve(line.strip()));
+        }
+        return files;
+    }
+
+    /**
+     * Ciphers or deciphers every file of a batch, at most {@code concurrency} at a time.
+     * <p>
+     * The result of each file is written to {@code outputDir} under the same file name. A file that couldn't be
+     * processed doesn't stop the batch : its error is reported in its result. So is a file named like another file of
+     * the batch, as its result would overwrite the other's : it isn't processed.
+     *
+     * @param files       the files to process
+     * @param outputDir   the directory the results are written to
+     * @param type        the cipher to be used : Caesar, Vernam or Vigenere
+     * @param encrypt     true to cipher the files, false to decipher them
+     * @param key         the key to use, or "" to crack the key of each file when deciphering
+     * @param concurrency the amount of files processed at the same time
+     * @return the result of each file, in the same order as {@code files}
+     * @throws IOException              if the output directory couldn't be created
+     * @throws InterruptedException     if interrupted while waiting for the batch to end
+     * @throws IllegalArgumentException if the output directory holds files of the batch, which would be overwritten
+     */
+    public static List<Result> run(List<Path> files, Path outputDir, String type, boolean encrypt, String key,
+                                   int concurrency) throws IOException, InterruptedException {
+        return run(files, outputDir, type, encrypt, key, concurrency, null);
+    }
+
+    /**
+     * Ciphers or deciphers every file of a batch, looking the keys to crack up in a cache first.
+     * <p>
+     * Duplicated files of a batch are thus only cracked once.
+     *
+     * @param files       the files to process
+     * @param outputDir   the directory the results are written to
+     * @param type        the cipher to be used : Caesar, Vernam or Vigenere
+     * @param encrypt     true to cipher the files, false to decipher them
+     * @param key         the key to use, or "" to crack the key of each file when deciphering
+     * @param concurrency the amount of files processed at the same time
+     * @param cache       the cache of cracked keys, or null to always crack
+     * @return the result of each file, in the same order as {@code files}
+     * @throws IOException              if the output directory couldn't be created
+     * @throws InterruptedException     if interrupted while waiting for the batch to end
+     * @throws IllegalArgumentException if the output directory holds files of the batch, which would be overwritten
+     * @see #run(List, Path, String, boolean, String, int)
+     */
+    public static List<Result> run(List<Path> files, Path outputDir, String type, boolean encrypt, String key,
+                                   int concurrency, CrackCache cache) throws IOException, InterruptedException {
+        for (Path file : files) {
+            Path directory = file.toAbsolutePath().normalize().getParent();
+            if (directory.equals(outputDir.toAbsolutePath().normalize())
+                    || Files.exists(directory) && Files.exists(outputDir) && Files.isSameFile(directory, outputDir))
+                throw new IllegalArgumentException("The output directory " + outputDir + " holds " + file
+                        + ", which would be overwritten");
+        }
+        Files.createDirectories(outputDir);
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            // the first file of each name, a manifest listing the same file twice only writing the same result twice
+            Map<Path, Path> names = new HashMap<>();
+            List<Future<Result>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                Path first = names.putIfAbsent(file.getFileName(), file.toAbsolutePath().normalize());
+                if (first != null && !first.equals(file.toAbsolutePath().normalize())) {
+                    futures.add(CompletableFuture.completedFuture(new Result(file, type, key, Double.NaN, 0,
+                            "Named like " + first + ", whose result would be overwritten")));
+                    continue;
+                }
+                futures.add(executor.submit(() -> process(file, outputDir, type, encrypt, key, cache)));
+            }
+
+            List<Result> results = new ArrayList<>(files.size());
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // process() reports its own errors, this can only be an Error
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the results of a batch as CSV, with a header line.
+     *
+     * @param results the results of the batch
+     * @param output  the path to the manifest
+     * @throws IOException if the manifest couldn't be written
+     */
+    public static void writeResults(List<Result> results, Path output) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+            out.println("file,cipher,key,score,duration_ms,error");
+            for (Result result : results) {
+                out.println(String.join(",",
+                        csv(result.file().toString()),
+                        csv(result.cipher()),
+                        csv(result.key()),
+                        Double.isNaN(result.score()) ? "" : String.valueOf(result.score()),
+                        String.valueOf(result.durationMillis()),
+                        csv(result.error() == null ? "" : result.error())));
+            }
+        }
+    }
+
+    private static Result process(Path file, Path outputDir, String type, boolean encrypt, String key,
+                                  CrackCache cache) {
+        long start = System.nanoTime();
+        try {
+            String text;
+            try (Metrics.Timer timer = Metrics.time(Phase.READ)) {
+                text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                timer.bytes(text.length());
+            }
+            Jobs.Outcome outcome = encrypt ? Jobs.encrypt(type, text, key) : Jobs.decrypt(type, text, key, cache);
+            if (outcome.key().equals(""))
+                return new Result(file, type, "", Double.NaN, elapsedMillis(start), "Undecipherable");
+
+            try (Metrics.Timer timer = Metrics.time(Phase.WRITE)) {
+                timer.bytes(outcome.text().length());
+                Files.writeString(outputDir.resolve(file.getFileName()), outcome.text(), StandardCharsets.UTF_8);
+            }
+            return new Result(file, type, outcome.key(), outcome.score(), elapsedMillis(start), null);
+        } catch (NumberFormatException e) {
+            return new Result(file, type, key, Double.NaN, elapsedMillis(start), "Caesar key must be a numeral!");
+        } catch (Exception e) {
+            return new Result(file, type, key, Double.NaN, elapsedMillis(start), e.toString());
+        }
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Quotes a CSV field if needed.
+     */
+    private static String csv(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0)
+            return field;
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+}
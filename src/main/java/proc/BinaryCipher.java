@@ -0,0 +1,230 @@
+package proc;
+
+import cipher.ByteText;
+import cipher.Caesar;
+import cipher.Histogram;
+import cipher.Profile;
+import cipher.Vernam;
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Ciphers texts to raw binary files, so that the ciphered text takes exactly one byte per letter.
+ * <p>
+ * Written as text, a Vernam ciphered character can be any code point, which UTF-8 encodes in up to 3 bytes and which
+ * may not survive being decoded back. Here, the sanitized letters are ASCII, so each one is a byte : it is ciphered
+ * as is and written without any charset. A binary file is made of, in big-endian :
+ * <ul>
+ *     <li>the magic bytes {@code FQCT}</li>
+ *     <li>the version of the format, as a byte</li>
+ *     <li>the cipher, as a byte : 0 for Caesar, 1 for Vernam</li>
+ *     <li>the amount of ciphered bytes, as a long</li>
+ *     <li>the ciphered bytes</li>
+ * </ul>
+ * A Vernam key is used as its ISO-8859-1 bytes, one per character, and a cracked key is made of one character per
+ * byte found : any cracked key can thus be given back to decipher the file, whatever its bytes.
+ * <p>
+ * N.B. : the plain text still has to be decoded once to be sanitized, but the ciphered text never is.
+ */
+public class BinaryCipher {
+
+    /**
+     * The version of the format written by {@link #encrypt(Path, Path, String, String)}.
+     */
+    public static final int VERSION = 1;
+
+    static final int MAGIC = 0x46514354; // "FQCT"
+    static final int HEADER = 14;
+    static final byte CAESAR = 0;
+    static final byte VERNAM = 1;
+
+    /**
+     * The result of deciphering a binary file.
+     *
+     * @param type   the cipher used, as read from the header
+     * @param key    the key used, cracked if it wasn't provided, or "" if it couldn't be
+     * @param length the amount of deciphered bytes
+     */
+    public record Outcome(String type, String key, long length) {
+    }
+
+    /**
+     * Tells if a file is in the binary format, by reading its magic bytes.
+     *
+     * @param path the path to the file
+     * @return true if the file starts with the magic bytes
+     * @throws IOException if the file couldn't be read
+     */
+    public static boolean isBinary(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] magic = in.readNBytes(4);
+            return magic.length == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Sanitizes and ciphers a text file to a binary file.
+     *
+     * @param input  the path to the plain text, read as UTF-8
+     * @param output the path to the binary file
+     * @param type   the cipher to be used : either Caesar or Vernam, as Vigenere isn't supported
+     * @param key    the key used to cipher : an integer for Caesar, a string for Vernam
+     * @return the amount of ciphered bytes
+     * @throws IOException              if a file couldn't be read or written
+     * @throws NumberFormatException    if a Caesar key isn't a numeral
+     * @throws IllegalArgumentException if the cipher isn't supported, or the Vernam key is empty or has characters
+     *                                  that don't fit in a byte
+     */
+    public static long encrypt(Path input, Path output, String type, String key) throws IOException {
+        byte cipher = cipherCode(type);
+        byte[] keyBytes = cipher == VERNAM ? keyBytes(key) : null;
+
+        String text;
+        try (Metrics.Timer timer = Metrics.time(Phase.READ)) {
+            text = Files.readString(input, StandardCharsets.UTF_8);
+            timer.bytes(text.length());
+        }
+        String letters = Preprocess.sanitizeToAlpha(text);
+
+        // the header is followed by the letters, which are ciphered in place
+        ByteBuffer data = ByteBuffer.allocate(HEADER + letters.length());
+        data.putInt(MAGIC).put((byte) VERSION).put(cipher).putLong(letters.length());
+        for (int i = 0; i < letters.length(); i++) {
+            data.put((byte) letters.charAt(i));
+        }
+
+        byte[] bytes = data.array();
+        try (Metrics.Timer timer = Metrics.time(Phase.APPLY_KEY)) {
+            timer.bytes(letters.length());
+            if (cipher == CAESAR)
+                Caesar.cipher(bytes, HEADER, letters.length(), Caesar.shiftTable(Integer.parseInt(key)));
+            else
+                Vernam.cipher(bytes, HEADER, letters.length(), keyBytes, 0);
+        }
+
+        try (Metrics.Timer timer = Metrics.time(Phase.WRITE)) {
+            timer.bytes(bytes.length);
+            Files.write(output, bytes);
+        }
+        return letters.length();
+    }
+
+    /**
+     * Deciphers a binary file, cracking its key if it isn't provided.
+     * <p>
+     * The key is cracked on the ciphered bytes themselves, seen as a {@link ByteText}. The plain text is written as
+     * ASCII letters, or as "Undecipherable." if the key couldn't be cracked.
+     *
+     * @param input        the path to the binary file
+     * @param output       the path to the plain text
+     * @param key          the key used to cipher, or "" to crack it
+     * @param maxKeyLength the longest Vernam key length to try when cracking
+     * @param profile      the language of the plain text, used when cracking
+     * @return the cipher and the key that were used
+     * @throws IOException              if a file couldn't be read or written
+     * @throws NumberFormatException    if a Caesar key isn't a numeral
+     * @throws IllegalArgumentException if the file isn't in the binary format
+     */
+    public static Outcome decrypt(Path input, Path output, String key, int maxKeyLength, Profile profile)
+            throws IOException {
+        byte[] bytes;
+        try (Metrics.Timer timer = Metrics.time(Phase.READ)) {
+            bytes = Files.readAllBytes(input);
+            timer.bytes(bytes.length);
+        }
+
+        byte cipher = checkHeader(ByteBuffer.wrap(bytes), bytes.length, input);
+        int length = bytes.length - HEADER;
+        String type;
+
+        if (cipher == CAESAR) {
+            type = "Caesar";
+            if (key.equals("")) {
+                try (Metrics.Timer timer = Metrics.time(Phase.KEY_SEARCH)) {
+                    timer.bytes(length);
+                    key = String.valueOf(Caesar.crackKey(new ByteText(bytes, HEADER, length),
+                            new Histogram().count(bytes, HEADER, length), profile));
+                }
+            }
+            try (Metrics.Timer timer = Metrics.time(Phase.APPLY_KEY)) {
+                timer.bytes(length);
+                Caesar.cipher(bytes, HEADER, length, Caesar.shiftTable(-Integer.parseInt(key)));
+            }
+        } else if (cipher == VERNAM) {
+            type = "Vernam";
+            // the characters of a key cracked on bytes are all below 256
+            if (key.equals("")) key = new String(Vernam.crackKey(new ByteText(bytes, HEADER, length), maxKeyLength,
+                    profile));
+            byte[] keyBytes = keyBytes(key);
+
+            if (keyBytes.length == 0) {
+                Files.write(output, "Undecipherable.".getBytes(StandardCharsets.US_ASCII));
+                return new Outcome(type, "", 0);
+            }
+            try (Metrics.Timer timer = Metrics.time(Phase.APPLY_KEY)) {
+                timer.bytes(length);
+                Vernam.cipher(bytes, HEADER, length, keyBytes, 0);
+            }
+        } else {
+            throw new IllegalArgumentException(input + " is ciphered with an unknown cipher " + cipher);
+        }
+
+        try (Metrics.Timer timer = Metrics.time(Phase.WRITE)) {
+            timer.bytes(length);
+            try (OutputStream out = Files.newOutputStream(output)) {
+                out.write(bytes, HEADER, length);
+            }
+        }
+        return new Outcome(type, key, length);
+    }
+
+    /**
+     * Returns the bytes a Vernam key is used as : the code of each of its characters.
+     *
+     * @param key the key
+     * @return the ISO-8859-1 bytes of the key
+     * @throws IllegalArgumentException if a character of the key doesn't fit in a byte
+     */
+    static byte[] keyBytes(String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) > 0xFF)
+                throw new IllegalArgumentException("A Vernam key must be made of ISO-8859-1 characters with --binary");
+        }
+        return key.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Checks the header of a binary file.
+     *
+     * @param header a buffer starting with the header, in big-endian
+     * @param size   the size of the whole file
+     * @param input  the path to the file, for error messages
+     * @return the cipher the file is ciphered with
+     * @throws IllegalArgumentException if the file isn't in the binary format
+     */
+    static byte checkHeader(ByteBuffer header, long size, Path input) {
+        if (size < HEADER || header.getInt(0) != MAGIC)
+            throw new IllegalArgumentException(input + " is not a binary ciphered file");
+        if (header.get(4) != VERSION)
+            throw new IllegalArgumentException(input + " is of unsupported version " + header.get(4));
+        if (header.getLong(6) != size - HEADER)
+            throw new IllegalArgumentException(input + " is truncated");
+        return header.get(5);
+    }
+
+    static byte cipherCode(String type) {
+        if (type.equalsIgnoreCase("Caesar")) return CAESAR;
+        if (type.equalsIgnoreCase("Vernam")) return VERNAM;
+        if (type.equalsIgnoreCase("Vigenere"))
+            throw new IllegalArgumentException("Vigenere isn't supported by the binary format");
+        throw new IllegalArgumentException("Unknown cipher : " + type);
+    }
+}
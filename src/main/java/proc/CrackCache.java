@@ -0,0 +1,222 @@
+package proc;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the keys cracked from ciphered texts, so the same text is never cracked twice.
+ * <p>
+ * Entries are looked up by a SHA-256 digest of the cipher and the ciphered text. The most recently used entries are
+ * kept in memory, up to a given amount. If a file is given, every entry is also appended to it, and entries evicted
+ * from memory or cracked by a previous run are read back from it : the file is never rewritten, only its index (the
+ * offset of each entry) is held in memory.
+ * <p>
+ * The file holds one entry per line : {@code digest score keyLengths key}, separated by tabs, with the key lengths
+ * separated by commas and the key encoded in base 64. A line left incomplete by a crash is dropped when the file is
+ * opened.
+ * <p>
+ * N.B. : entries only depend on the cipher and the text, so the cache must only be used with the default language
+ * profile and key lengths.
+ */
+public class CrackCache implements Closeable {
+
+    /**
+     * The amount of entries kept in memory when none is given.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * A cracked key.
+     *
+     * @param key        the cracked key, "" if it couldn't be cracked
+     * @param score      the chi-square of the deciphered text against English
+     * @param keyLengths the most likely key lengths, from the most to the least likely, empty for Caesar
+     */
+    public record Entry(String key, double score, List<Integer> keyLengths) {
+    }
+
+    private final Map<String, Entry> memory;
+    private final Map<String, Long> index = new HashMap<>();
+    private final RandomAccessFile file;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache only kept in memory.
+     *
+     * @param capacity the amount of entries kept in memory
+     */
+    public CrackCache(int capacity) {
+        this.memory = lru(capacity);
+        this.file = null;
+    }
+
+    /**
+     * Creates a cache kept in memory and in a file, reading the entries already in the file.
+     *
+     * @param capacity the amount of entries kept in memory
+     * @param path     the path to the file, created if it doesn't exist
+     * @throws IOException if the file couldn't be read or created
+     */
+    public CrackCache(int capacity, Path path) throws IOException {
+        this.memory = lru(capacity);
+
+        long offset = 0;
+        long last = 0;
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    last = offset;
+                    int tab = line.indexOf('\t');
+                    if (tab > 0) index.put(line.substring(0, tab), offset);
+                    offset += line.length() + 1;
+                }
+            }
+        }
+
+        this.file = new RandomAccessFile(path.toFile(), "rw");
+        if (offset > file.length()) {
+            // the last line has no line break : it was being written when the process died
+            index.values().remove(last);
+            file.setLength(last);
+        }
+    }
+
+    /**
+     * Computes the digest an entry is looked up by.
+     *
+     * @param type the cipher, case-insensitive
+     * @param text the ciphered text
+     * @return the hexadecimal digest
+     */
+    public static String digest(String type, CharSequence text) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(type.toLowerCase().getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            sha.update(text.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(sha.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Looks up the key cracked from a text, counting a hit or a miss.
+     *
+     * @param digest the digest of the cipher and the text, from {@link #digest(String, CharSequence)}
+     * @return the entry, or null if the text was never cracked
+     * @throws IOException if the file couldn't be read
+     */
+    public synchronized Entry get(String digest) throws IOException {
+        Entry entry = memory.get(digest);
+
+        if (entry == null && index.containsKey(digest)) {
+            file.seek(index.get(digest));
+            entry = parse(file.readLine());
+            if (entry != null) memory.put(digest, entry);
+        }
+
+        if (entry == null) misses++;
+        else hits++;
+        return entry;
+    }
+
+    /**
+     * Stores the key cracked from a text.
+     *
+     * @param digest the digest of the cipher and the text, from {@link #digest(String, CharSequence)}
+     * @param entry  the cracked key
+     * @throws IOException if the entry couldn't be appended to the file
+     */
+    public synchronized void put(String digest, Entry entry) throws IOException {
+        memory.put(digest, entry);
+        if (file == null || index.containsKey(digest)) return;
+
+        StringBuilder lengths = new StringBuilder();
+        for (int length : entry.keyLengths()) {
+            if (!lengths.isEmpty()) lengths.append(',');
+            lengths.append(length);
+        }
+        String line = digest + '\t' + entry.score() + '\t' + lengths + '\t'
+                + Base64.getEncoder().encodeToString(entry.key().getBytes(StandardCharsets.UTF_8)) + '\n';
+
+        long offset = file.length();
+        FileChannel channel = file.getChannel();
+        ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.ISO_8859_1));
+        while (bytes.hasRemaining()) channel.write(bytes, offset + bytes.position());
+        index.put(digest, offset);
+    }
+
+    /**
+     * Returns how many lookups found an entry.
+     *
+     * @return the amount of hits
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns how many lookups found no entry.
+     *
+     * @return the amount of misses
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Closes the file of the cache, if any.
+     *
+     * @throws IOException if the file couldn't be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (file != null) file.close();
+    }
+
+    private static Entry parse(String line) {
+        if (line == null) return null;
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 4) return null;
+
+        try {
+            List<Integer> lengths = new ArrayList<>();
+            if (!fields[2].isEmpty()) {
+                for (String length : fields[2].split(",")) lengths.add(Integer.parseInt(length));
+            }
+            String key = new String(Base64.getDecoder().decode(fields[3]), StandardCharsets.UTF_8);
+            return new Entry(key, Double.parseDouble(fields[1]), List.copyOf(lengths));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Entry> lru(int capacity) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+}
@@ -0,0 +1,219 @@
+package proc;
+
+import cipher.Anytime;
+import cipher.Caesar;
+import cipher.Candidate;
+import cipher.KeyLengthAnalyzer;
+import cipher.Profile;
+import cipher.Util;
+import cipher.Vernam;
+import cipher.Vigenere;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class Jobs {
+
+    /**
+     * The amount of likely key lengths stored in the cache along with a cracked Vernam key.
+     */
+    private static final int KEY_LENGTHS = 5;
+
+    /**
+     * The result of ciphering or deciphering a text.
+     *
+     * @param text    the resulting text
+     * @param key     the key that was used, cracked if it wasn't provided
+     * @param score   the chi-square of the deciphered text against English, or NaN when ciphering
+     * @param partial true if the key was cracked within a time budget that ran out, so it may be wrong
+     */
+    public record Outcome(String text, String key, double score, boolean partial) {
+
+        /**
+         * Creates the result of a job that went to the end.
+         *
+         * @param text  the resulting text
+         * @param key   the key that was used, cracked if it wasn't provided
+         * @param score the chi-square of the deciphered text against English, or NaN when ciphering
+         */
+        public Outcome(String text, String key, double score) {
+            this(text, key, score, false);
+        }
+    }
+
+    /**
+     * Tells if a cipher is supported.
+     *
+     * @param type the name of the cipher, case-insensitive
+     * @return true if the cipher is Caesar, Vernam or Vigenere
+     */
+    public static boolean isSupported(String type) {
+        return type.equalsIgnoreCase("Caesar") || type.equalsIgnoreCase("Vernam") || type.equalsIgnoreCase("Vigenere");
+    }
+
+    /**
+     * Sanitizes and ciphers a text.
+     * <p>
+     * Unlike {@code Main}, nothing is printed, so this can be used on many texts at once.
+     *
+     * @param type the cipher to be used : Caesar, Vernam or Vigenere
+     * @param text the plain text, which is sanitized first
+     * @param key  the key used to cipher : an integer for Caesar, a string for Vernam, letters for Vigenere
+     * @return the ciphered text
+     * @throws NumberFormatException    if a Caesar key isn't a numeral
+     * @throws IllegalArgumentException if the cipher isn't supported or a Vigenere key isn't made of lowercase letters
+     */
+    public static Outcome encrypt(String type, String text, String key) {
+        text = Preprocess.sanitizeToAlpha(text);
+
+        if (type.equalsIgnoreCase("Caesar"))
+            return new Outcome(Caesar.cipher(text, Integer.parseInt(key)), key, Double.NaN);
+        if (type.equalsIgnoreCase("Vernam"))
+            return new Outcome(Vernam.cipher(text, key.toCharArray()), key, Double.NaN);
+        if (type.equalsIgnoreCase("Vigenere"))
+            return new Outcome(Vigenere.cipher(text, key.toCharArray()), key, Double.NaN);
+
+        throw new IllegalArgumentException("Unknown cipher : " + type);
+    }
+
+    /**
+     * Deciphers a text, cracking its key if it isn't provided.
+     * <p>
+     * Unlike {@code Main}, nothing is printed, so this can be used on many texts at once.
+     *
+     * @param type the cipher used : Caesar, Vernam or Vigenere
+     * @param text the ciphered text
+     * @param key  the key used to cipher, or "" to crack it
+     * @return the deciphered text and the key, which is "" if it couldn't be cracked
+     * @throws NumberFormatException    if a Caesar key isn't a numeral
+     * @throws IllegalArgumentException if the cipher isn't supported
+     */
+    public static Outcome decrypt(String type, String text, String key) {
+        String plain;
+
+        if (type.equalsIgnoreCase("Caesar")) {
+            if (key.equals("")) key = String.valueOf(Caesar.crackKey(text, Profile.ENGLISH));
+            plain = Caesar.decipher(text, Integer.parseInt(key));
+        } else if (type.equalsIgnoreCase("Vernam")) {
+            if (key.equals("")) key = new String(Vernam.crackKey(text, KeyLengthAnalyzer.DEFAULT_MAX_PERIOD));
+            if (key.equals("")) return new Outcome("Undecipherable.", "", Double.MAX_VALUE);
+            plain = Vernam.decipher(text, key.toCharArray());
+        } else if (type.equalsIgnoreCase("Vigenere")) {
+            if (key.equals("")) key = new String(Vigenere.crackKey(text, KeyLengthAnalyzer.DEFAULT_MAX_PERIOD,
+                    Profile.ENGLISH));
+            if (key.equals("")) return new Outcome("Undecipherable.", "", Double.MAX_VALUE);
+            plain = Vigenere.decipher(text, key.toCharArray());
+        } else {
+            throw new IllegalArgumentException("Unknown cipher : " + type);
+        }
+
+        return new Outcome(plain, key, Util.chiSquare(plain));
+    }
+
+    /**
+     * Deciphers a text, looking its key up in a cache before cracking it.
+     * <p>
+     * A cracked key is stored in the cache, along with the most likely key lengths for Vernam and Vigenere.
+     *
+     * @param type  the cipher used : Caesar, Vernam or Vigenere
+     * @param text  the ciphered text
+     * @param key   the key used to cipher, or "" to crack it
+     * @param cache the cache of cracked keys, or null to always crack
+     * @return the deciphered text and the key, which is "" if it couldn't be cracked
+     * @throws IOException              if the cache couldn't be accessed
+     * @throws NumberFormatException    if a Caesar key isn't a numeral
+     * @throws IllegalArgumentException if the cipher isn't supported
+     * @see #decrypt(String, String, String)
+     */
+    public static Outcome decrypt(String type, String text, String key, CrackCache cache) throws IOException {
+        if (cache == null || !key.equals("")) return decrypt(type, text, key);
+        if (!isSupported(type)) throw new IllegalArgumentException("Unknown cipher : " + type);
+
+        String digest = CrackCache.digest(type, text);
+        CrackCache.Entry entry = cache.get(digest);
+
+        if (entry == null) {
+            List<Integer> keyLengths = List.of();
+            if (type.equalsIgnoreCase("Caesar")) {
+                key = String.valueOf(Caesar.crackKey(text, Profile.ENGLISH));
+            } else {
+                List<Candidate> ranked = KeyLengthAnalyzer.rank(text, KeyLengthAnalyzer.DEFAULT_MAX_PERIOD);
+                int keyLength = KeyLengthAnalyzer.best(ranked);
+                key = new String(type.equalsIgnoreCase("Vigenere")
+                        ? Vigenere.solveKey(text, keyLength, Profile.ENGLISH)
+                        : Vernam.solveKey(text, keyLength, Profile.ENGLISH));
+                keyLengths = ranked.stream().limit(KEY_LENGTHS).map(Candidate::key).toList();
+            }
+
+            Outcome outcome = key.equals("")
+                    ? new Outcome("Undecipherable.", "", Double.MAX_VALUE)
+                    : decrypt(type, text, key);
+            cache.put(digest, new CrackCache.Entry(outcome.key(), outcome.score(), keyLengths));
+            return outcome;
+        }
+
+        return decrypt(type, text, entry);
+    }
+
+    /**
+     * Deciphers a text with a key found in the cache, without cracking or scoring anything.
+     *
+     * @return the deciphered text, with the key and score of the entry
+     */
+    private static Outcome decrypt(String type, String text, CrackCache.Entry entry) {
+        if (entry.key().equals("")) return new Outcome("Undecipherable.", "", Double.MAX_VALUE);
+        String plain;
+        if (type.equalsIgnoreCase("Caesar")) plain = Caesar.decipher(text, Integer.parseInt(entry.key()));
+        else if (type.equalsIgnoreCase("Vigenere")) plain = Vigenere.decipher(text, entry.key().toCharArray());
+        else plain = Vernam.decipher(text, entry.key().toCharArray());
+        return new Outcome(plain, entry.key(), entry.score());
+    }
+
+    /**
+     * Deciphers a text, cracking its key within a time budget if it isn't provided.
+     * <p>
+     * The key is looked up in the cache first. Otherwise, it is cracked by {@link Anytime}, and the best key found
+     * when the budget runs out is used : the outcome is then flagged as partial, and isn't stored in the cache.
+     *
+     * @param type   the cipher used : Caesar, Vernam or Vigenere
+     * @param text   the ciphered text
+     * @param key    the key used to cipher, or "" to crack it
+     * @param cache  the cache of cracked keys, or null to always crack
+     * @param budget how long cracking may take, or null for no limit
+     * @return the deciphered text and the key, which is "" if it couldn't be cracked
+     * @throws IOException              if the cache couldn't be accessed
+     * @throws NumberFormatException    if a Caesar key isn't a numeral
+     * @throws IllegalArgumentException if the cipher isn't supported
+     * @see #decrypt(String, String, String, CrackCache)
+     */
+    public static Outcome decrypt(String type, String text, String key, CrackCache cache, Duration budget)
+            throws IOException {
+        if (budget == null || !key.equals("")) return decrypt(type, text, key, cache);
+        if (!isSupported(type)) throw new IllegalArgumentException("Unknown cipher : " + type);
+
+        String digest = cache == null ? null : CrackCache.digest(type, text);
+        if (cache != null) {
+            CrackCache.Entry entry = cache.get(digest);
+            if (entry != null) return decrypt(type, text, entry);
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int maxKeyLength = KeyLengthAnalyzer.DEFAULT_MAX_PERIOD;
+        Anytime.Result result;
+        if (type.equalsIgnoreCase("Caesar")) result = Anytime.crackCaesar(text, budget, Profile.ENGLISH);
+        else if (type.equalsIgnoreCase("Vigenere"))
+            result = Anytime.crackVigenere(text, maxKeyLength, budget, pool, Profile.ENGLISH);
+        else result = Anytime.crackVernam(text, maxKeyLength, budget, pool, Profile.ENGLISH);
+
+        Outcome outcome = result.key().equals("")
+                ? new Outcome("Undecipherable.", "", Double.MAX_VALUE)
+                : decrypt(type, text, result.key());
+        if (cache != null && !result.partial()) {
+            cache.put(digest, new CrackCache.Entry(outcome.key(), outcome.score(),
+                    result.keyLengths().stream().limit(KEY_LENGTHS).toList()));
+        }
+        return new Outcome(outcome.text(), outcome.key(), outcome.score(), result.partial());
+    }
+}
@@ -0,0 +1,276 @@
+package proc;
+
+import cipher.Anytime;
+import cipher.BufferText;
+import cipher.Caesar;
+import cipher.Histogram;
+import cipher.Profile;
+import cipher.Vernam;
+import metrics.Metrics;
+import metrics.Phase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Ciphers binary files of any size through memory-mapped segments, without ever loading them on the heap.
+ * <p>
+ * The files are in the format of {@link BinaryCipher}, but are mapped {@link #SEGMENT_SIZE} bytes at a time rather
+ * than read whole, so they aren't limited to 2 GB. The letters are moved between the mapped segments a block at a time
+ * through a single small array, which the SIMD kernels of the ciphers and of {@link Histogram} run on. The operating
+ * system reads and writes the pages of the files, so the heap holds the same few buffers whatever the size of the
+ * files.
+ * <p>
+ * N.B. : a Caesar key is cracked from the letter counts of the whole file. A Vernam key is cracked from a view of
+ * the first segment, as {@link cipher.KeyLengthAnalyzer} indexes texts with ints : with a budget, only a sample of it
+ * is analysed to begin with, see {@link Anytime}.
+ */
+public class MappedCipher {
+
+    /**
+     * The amount of bytes mapped at once.
+     */
+    public static final long SEGMENT_SIZE = 1L << 30;
+
+    /**
+     * The amount of bytes ciphered at once.
+     */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Sanitizes and ciphers a text file of any size to a binary file.
+     * <p>
+     * The text is decoded from the mapped segments of the input, sanitized and ciphered a block at a time, and written
+     * to mapped segments of the output. The length in the header is written last, once it is known.
+     *
+     * @param input  the path to the plain text, read as UTF-8
+     * @param output the path to the binary file
+     * @param type   the cipher to be used : either Caesar or Vernam, as Vigenere isn't supported
+     * @param key    the key used to cipher : an integer for Caesar, a string for Vernam
+     * @return the amount of ciphered bytes
+     * @throws IOException              if a file couldn't be read or written
+     * @throws NumberFormatException    if a Caesar key isn't a numeral
+     * @throws IllegalArgumentException if the cipher isn't supported, or the Vernam key is empty or has characters
+     *                                  that don't fit in a byte
+     */
+    public static long encrypt(Path input, Path output, String type, String key) throws IOException {
+        byte cipher = BinaryCipher.cipherCode(type);
+        byte[] table = cipher == BinaryCipher.CAESAR ? Caesar.shiftTable(Integer.parseInt(key)) : null;
+        byte[] keyBytes = cipher == BinaryCipher.VERNAM ? BinaryCipher.keyBytes(key) : null;
+        if (cipher == BinaryCipher.VERNAM && keyBytes.length == 0)
+            throw new IllegalArgumentException("Cannot cipher with an empty key");
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(BLOCK_SIZE);
+        StringBuilder letters = new StringBuilder(BLOCK_SIZE);
+        byte[] block = new byte[BLOCK_SIZE];
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Segments target = new Segments(out, BinaryCipher.HEADER, Long.MAX_VALUE);
+            long size = in.size();
+            long read = 0;
+            int keyPos = 0;
+
+            while (read < size) {
+                MappedByteBuffer segment = in.map(FileChannel.MapMode.READ_ONLY, read,
+                        Math.min(SEGMENT_SIZE, size - read));
+                boolean last = read + segment.limit() == size;
+
+                CoderResult result;
+                do {
+                    result = decoder.decode(segment, chars, last);
+                    chars.flip();
+
+                    letters.setLength(0);
+                    Preprocess.sanitizeToAlpha(chars, 0, chars.length(), letters);
+                    chars.clear();
+
+                    // a block of characters may give more letters than a block holds : 'æ' gives "ae"
+                    for (int from = 0; from < letters.length(); from += BLOCK_SIZE) {
+                        int length = Math.min(BLOCK_SIZE, letters.length() - from);
+                        for (int i = 0; i < length; i++) {
+                            block[i] = (byte) letters.charAt(from + i);
+                        }
+                        try (Metrics.Timer timer = Metrics.time(Phase.APPLY_KEY)) {
+                            timer.bytes(length);
+                            if (table != null) Caesar.cipher(block, 0, length, table);
+                            else keyPos = Vernam.cipher(block, 0, length, keyBytes, keyPos);
+                        }
+                        target.put(block, length);
+                    }
+                } while (result.isOverflow());
+
+                // a character cut by the end of the segment is decoded again from the next one
+                read += segment.position();
+                if (last) break;
+            }
+
+            long length = target.position() - BinaryCipher.HEADER;
+            ByteBuffer header = ByteBuffer.allocate(BinaryCipher.HEADER);
+            header.putInt(BinaryCipher.MAGIC).put((byte) BinaryCipher.VERSION).put(cipher).putLong(length).flip();
+            out.write(header, 0);
+            out.truncate(target.position());
+            return length;
+        }
+    }
+
+    /**
+     * Deciphers a binary file of any size, cracking its key if it isn't provided.
+     *
+     * @param input        the path to the binary file
+     * @param output       the path to the plain text
+     * @param key          the key used to cipher, or "" to crack it
+     * @param maxKeyLength the longest Vernam key length to try when cracking
+     * @param budget       how long cracking a Vernam key may take, or null for no limit
+     * @param profile      the language of the plain text, used when cracking
+     * @return the cipher and the key that were used
+     * @throws IOException              if a file couldn't be read or written
+     * @throws NumberFormatException    if a Caesar key isn't a numeral
+     * @throws IllegalArgumentException if the file isn't in the binary format
+     * @see BinaryCipher#decrypt(Path, Path, String, int, Profile)
+     */
+    public static BinaryCipher.Outcome decrypt(Path input, Path output, String key, int maxKeyLength,
+                                               Duration budget, Profile profile) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = in.size();
+            ByteBuffer header = ByteBuffer.allocate(BinaryCipher.HEADER);
+            in.read(header, 0);
+            byte cipher = BinaryCipher.checkHeader(header, size, input);
+            long length = size - BinaryCipher.HEADER;
+
+            String type;
+            byte[] table = null;
+            byte[] keyBytes = null;
+
+            if (cipher == BinaryCipher.CAESAR) {
+                type = "Caesar";
+                if (key.equals("")) {
+                    // the counts are of the whole file, the sample the best keys are told apart by of its start
+                    BufferText start = new BufferText(in.map(FileChannel.MapMode.READ_ONLY, BinaryCipher.HEADER,
+                            Math.min(SEGMENT_SIZE, length)));
+                    key = String.valueOf(Caesar.crackKey(start, count(in, length), profile));
+                }
+                table = Caesar.shiftTable(-Integer.parseInt(key));
+            } else if (cipher == BinaryCipher.VERNAM) {
+                type = "Vernam";
+                if (key.equals("")) {
+                    BufferText text = new BufferText(in.map(FileChannel.MapMode.READ_ONLY, BinaryCipher.HEADER,
+                            Math.min(SEGMENT_SIZE, length)));
+                    char[] cracked = budget == null
+                            ? Vernam.crackKey(text, maxKeyLength, profile)
+                            : Anytime.crackVernam(text, maxKeyLength, budget, ForkJoinPool.commonPool(), profile)
+                            .key().toCharArray();
+                    // the characters of a key cracked on bytes are all below 256
+                    key = new String(cracked);
+                }
+                keyBytes = BinaryCipher.keyBytes(key);
+            } else {
+                throw new IllegalArgumentException(input + " is ciphered with an unknown cipher " + cipher);
+            }
+
+            try (FileChannel out = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (keyBytes != null && keyBytes.length == 0) {
+                    out.write(ByteBuffer.wrap("Undecipherable.".getBytes(StandardCharsets.US_ASCII)));
+                    return new BinaryCipher.Outcome(type, "", 0);
+                }
+
+                Segments target = new Segments(out, 0, length);
+                byte[] block = new byte[BLOCK_SIZE];
+                int keyPos = 0;
+
+                for (long done = 0; done < length; ) {
+                    MappedByteBuffer segment = in.map(FileChannel.MapMode.READ_ONLY, BinaryCipher.HEADER + done,
+                            Math.min(SEGMENT_SIZE, length - done));
+                    try (Metrics.Timer timer = Metrics.time(Phase.APPLY_KEY)) {
+                        timer.bytes(segment.limit());
+                        while (segment.hasRemaining()) {
+                            int n = Math.min(BLOCK_SIZE, segment.remaining());
+                            segment.get(block, 0, n);
+                            if (table != null) Caesar.cipher(block, 0, n, table);
+                            else keyPos = Vernam.cipher(block, 0, n, keyBytes, keyPos);
+                            target.put(block, n);
+                        }
+                    }
+                    done += segment.limit();
+                }
+            }
+            return new BinaryCipher.Outcome(type, key, length);
+        }
+    }
+
+    /**
+     * Counts the letters of the ciphered bytes of a binary file, a segment at a time.
+     */
+    private static Histogram count(FileChannel in, long length) throws IOException {
+        Histogram histogram = new Histogram();
+        byte[] block = new byte[BLOCK_SIZE];
+
+        try (Metrics.Timer timer = Metrics.time(Phase.KEY_SEARCH)) {
+            timer.bytes(length);
+            for (long done = 0; done < length; ) {
+                MappedByteBuffer segment = in.map(FileChannel.MapMode.READ_ONLY, BinaryCipher.HEADER + done,
+                        Math.min(SEGMENT_SIZE, length - done));
+                while (segment.hasRemaining()) {
+                    int n = Math.min(BLOCK_SIZE, segment.remaining());
+                    segment.get(block, 0, n);
+                    histogram.count(block, 0, n);
+                }
+                done += segment.limit();
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Writes bytes one after the other to a file, through mapped segments that are mapped as they are needed.
+     * <p>
+     * Mapping a segment grows the file to its end : if the final size isn't known, the file must be truncated once
+     * everything is written.
+     */
+    private static class Segments {
+
+        private final FileChannel channel;
+        private final long end;
+        private MappedByteBuffer segment;
+        private long start;
+
+        Segments(FileChannel channel, long start, long size) {
+            this.channel = channel;
+            this.start = start;
+            this.end = size == Long.MAX_VALUE ? Long.MAX_VALUE : start + size;
+        }
+
+        void put(byte[] bytes, int length) throws IOException {
+            int off = 0;
+            while (off < length) {
+                if (segment == null || !segment.hasRemaining()) {
+                    if (segment != null) start += segment.limit();
+                    segment = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(SEGMENT_SIZE, end - start));
+                }
+                int n = Math.min(length - off, segment.remaining());
+                segment.put(bytes, off, n);
+                off += n;
+            }
+        }
+
+        long position() {
+            return segment == null ? start : start + segment.position();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package proc;
 
+import metrics.Metrics;
+import metrics.Phase;
+
 import java.io.*;
+import java.nio.CharBuffer;
 import java.text.Normalizer;
-import java.util.function.Consumer;
 
 public class Preprocess {
 
@@ -20,6 +23,38 @@ public class Preprocess {
                 .replaceAll("[\u0300-\u036F]", "");
     }
 
+    /**
+     * The first character that isn't covered by the lookup tables.
+     * This covers ASCII, Latin-1 Supplement, Latin Extended-A and Latin Extended-B.
+     */
+    private static final int TABLE_END = 0x250;
+
+    /**
+     * For each ASCII character, the lowercase letter it is sanitized to, or 0 if it is removed.
+     */
+    private static final char[] ASCII = new char[128];
+
+    /**
+     * For each other character covered by the tables, the letters it is sanitized to, which are usually none or one.
+     */
+    private static final String[] LATIN = new String[TABLE_END - 128];
+
+    /**
+     * For each other character of the Basic Multilingual Plane, the letters it is sanitized to, or null if it wasn't
+     * met yet. Those are only normalized the first time they are met.
+     */
+    private static final String[] OTHERS = new String[Character.MAX_VALUE + 1 - TABLE_END];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            ASCII[c] = c;
+            ASCII[Character.toUpperCase(c)] = c;
+        }
+        for (int c = 128; c < TABLE_END; c++) {
+            LATIN[c - 128] = normalize(String.valueOf((char) c));
+        }
+    }
+
     /**
      * Sanitize the given string to only lowercase alphabetic characters.
      * All characters are converted to lowercase.
@@ -31,6 +66,103 @@ public class Preprocess {
      * @return a string made only of alphabetic [a-z] characters.
      */
     public static String sanitizeToAlpha(String str) {
+        try (Metrics.Timer timer = Metrics.time(Phase.SANITIZE)) {
+            timer.bytes(str.length());
+            StringBuilder sb = new StringBuilder(str.length());
+            sanitizeToAlpha(str, 0, str.length(), sb);
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Sanitize a range of characters to only lowercase alphabetic characters, appending them to a buffer.
+     * <p>
+     * This gives the same result as {@link #sanitizeToAlpha(String)} in a single pass : ASCII and the common accented
+     * Latin letters are looked up in a table, and only the rare other characters go through Unicode normalization,
+     * once for each of them.
+     * As the buffer is given, it can be reused from one call to the next.
+     * <p>
+     * N.B. : a surrogate pair cut by {@code to} is removed, as if it weren't a letter.
+     *
+     * @param text the text to sanitize
+     * @param from the index of the first character, inclusive
+     * @param to   the index of the last character, exclusive
+     * @param out  the buffer the letters are appended to
+     */
+    public static void sanitizeToAlpha(CharSequence text, int from, int to, StringBuilder out) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+
+            if (c < 128) {
+                char letter = ASCII[c];
+                if (letter != 0) out.append(letter);
+            } else if (c < TABLE_END) {
+                out.append(LATIN[c - 128]);
+            } else if (c >= 0x0300 && c <= 0x036F) {
+                // combining diacritical marks are always removed
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+                out.append(normalize(text.subSequence(i, i + 2).toString()));
+                i++;
+            } else {
+                // no need to synchronize, two threads normalizing the same character would get the same letters
+                String letters = OTHERS[c - TABLE_END];
+                if (letters == null) {
+                    letters = normalize(String.valueOf(c));
+                    OTHERS[c - TABLE_END] = letters;
+                }
+                out.append(letters);
+            }
+        }
+    }
+
+    /**
+     * Sanitize everything read from {@code in} to only lowercase alphabetic characters, one buffer at a time.
+     * <p>
+     * The letters are appended to {@code out} as they are found, so only one buffer is held in memory whatever the
+     * size of the input. Surrogate pairs cut between two buffers are kept together.
+     *
+     * @param in  where the text is read from
+     * @param out where the letters are appended to, such as a {@link Writer}
+     * @return the amount of letters appended
+     * @throws IOException if reading or appending failed
+     */
+    public static long sanitizeToAlpha(Reader in, Appendable out) throws IOException {
+        try (Metrics.Timer timer = Metrics.time(Phase.SANITIZE)) {
+            long count = sanitizeStream(in, out);
+            timer.bytes(count);
+            return count;
+        }
+    }
+
+    private static long sanitizeStream(Reader in, Appendable out) throws IOException {
+        char[] buffer = new char[1 << 16];
+        StringBuilder letters = new StringBuilder(buffer.length);
+        CharBuffer wrapped = CharBuffer.wrap(buffer);
+        long count = 0;
+        int kept = 0; // a high surrogate kept from the previous buffer
+        int read;
+
+        while ((read = in.read(buffer, kept, buffer.length - kept)) != -1) {
+            int end = kept + read;
+            // a high surrogate at the end may be completed by the next buffer
+            int cut = end > 0 && Character.isHighSurrogate(buffer[end - 1]) ? end - 1 : end;
+
+            letters.setLength(0);
+            sanitizeToAlpha(wrapped, 0, cut, letters);
+            out.append(letters);
+            count += letters.length();
+
+            kept = end - cut;
+            if (kept > 0) buffer[0] = buffer[cut];
+        }
+
+        return count;
+    }
+
+    /**
+     * Sanitize a short string the slow way : lowercase, decompose and remove what isn't a letter.
+     */
+    private static String normalize(String str) {
         return Normalizer
                 .normalize(str.toLowerCase(), Normalizer.Form.NFD)
                 .replaceAll("[^a-z]", "");
@@ -51,8 +183,18 @@ public class Preprocess {
         try (FileReader ifr = new FileReader(input);
              BufferedReader ibr = new BufferedReader(ifr);
              PrintWriter opw = new PrintWriter(new File(output))) {
-            Consumer<String> printer = ignoreLines ? opw::print : opw::println;
-            ibr.lines().map(Preprocess::sanitizeToAlpha).forEachOrdered(printer);
+            if (ignoreLines) {
+                sanitizeToAlpha(ibr, opw);
+                return;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = ibr.readLine()) != null) {
+                sb.setLength(0);
+                sanitizeToAlpha(line, 0, line.length(), sb);
+                opw.println(sb);
+            }
         }
     }
 }
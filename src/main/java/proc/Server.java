@@ -0,0 +1,215 @@
+package proc;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived local HTTP server running cipher jobs, so they don't pay for the startup of a JVM each.
+ * <p>
+ * The server only listens on the loopback interface and never reaches out to the network. Jobs are sent as POST
+ * requests to {@code /encrypt}, {@code /decrypt} or {@code /crack}, with query parameters :
+ * <ul>
+ *     <li>{@code cipher} : Caesar, Vernam or Vigenere</li>
+ *     <li>{@code key} : the key, required to encrypt, cracked if missing when deciphering</li>
+ *     <li>{@code deadline} : how many milliseconds cracking may take, after which the best key so far is used</li>
+ *     <li>{@code file} : the path to the text to process, or else the text is the body of the request</li>
+ * </ul>
+ * The result is returned as a JSON object holding the cipher, the key, the score, the text (except for
+ * {@code /crack}), whether the key was cut short by the deadline, and how long the job took in microseconds. Errors
+ * are returned as {@code {"error": "..."}} with a 4xx or 5xx status. {@code GET /health} tells if the server is up,
+ * and how many keys were found in its cache of cracked keys.
+ * <p>
+ * N.B. : jobs are run on {@code workers} threads, and at most {@code queue} more wait for one of them. Once the queue
+ * is full, the thread accepting connections runs the job itself, so no new connection is accepted until it is done :
+ * clients are held back by the backlog of the socket instead of piling up in memory.
+ */
+public class Server {
+
+    private final HttpServer http;
+    private final ThreadPoolExecutor executor;
+    private final CrackCache cache;
+
+    /**
+     * Creates a server listening on the loopback interface. It is started by {@link #start()}.
+     *
+     * @param port    the port to listen on, or 0 for any free port
+     * @param workers the amount of jobs run at the same time
+     * @param queue   the amount of jobs that can wait for a worker
+     * @throws IOException if the port couldn't be bound
+     */
+    public Server(int port, int workers, int queue) throws IOException {
+        this(port, workers, queue, new CrackCache(CrackCache.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Creates a server listening on the loopback interface, looking the keys to crack up in a cache first.
+     *
+     * @param port    the port to listen on, or 0 for any free port
+     * @param workers the amount of jobs run at the same time
+     * @param queue   the amount of jobs that can wait for a worker
+     * @param cache   the cache of cracked keys
+     * @throws IOException if the port couldn't be bound
+     */
+    public Server(int port, int workers, int queue, CrackCache cache) throws IOException {
+        this.cache = cache;
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), queue);
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        http.setExecutor(executor);
+        http.createContext("/health", exchange -> reply(exchange, 200, "{\"status\":\"ok\",\"cacheHits\":"
+                + cache.hits() + ",\"cacheMisses\":" + cache.misses() + "}"));
+        http.createContext("/encrypt", exchange -> handle(exchange, "encrypt"));
+        http.createContext("/decrypt", exchange -> handle(exchange, "decrypt"));
+        http.createContext("/crack", exchange -> handle(exchange, "crack"));
+    }
+
+    /**
+     * Starts accepting requests, in the background.
+     */
+    public void start() {
+        http.start();
+    }
+
+    /**
+     * Stops the server, letting the running jobs end for at most the given delay.
+     *
+     * @param delaySeconds how long to wait for the running jobs
+     */
+    public void stop(int delaySeconds) {
+        http.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int port() {
+        return http.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, String operation) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                reply(exchange, 405, error("Use POST"));
+                return;
+            }
+
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String type = params.getOrDefault("cipher", "");
+            String key = params.getOrDefault("key", "");
+            Duration budget = params.containsKey("deadline")
+                    ? Duration.ofMillis(Long.parseLong(params.get("deadline")))
+                    : null;
+
+            if (!Jobs.isSupported(type)) {
+                reply(exchange, 400, error("Unknown cipher : " + type));
+                return;
+            }
+            if (operation.equals("encrypt") && key.equals("")) {
+                reply(exchange, 400, error("A key is required to cipher"));
+                return;
+            }
+
+            String text;
+            try (InputStream body = exchange.getRequestBody()) {
+                text = params.containsKey("file")
+                        ? Files.readString(Paths.get(params.get("file")), StandardCharsets.UTF_8)
+                        : new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            long start = System.nanoTime();
+            Jobs.Outcome outcome = switch (operation) {
+                case "encrypt" -> Jobs.encrypt(type, text, key);
+                case "decrypt" -> Jobs.decrypt(type, text, key, cache, budget);
+                default -> Jobs.decrypt(type, text, "", cache, budget);
+            };
+            long micros = (System.nanoTime() - start) / 1_000;
+
+            StringBuilder json = new StringBuilder("{");
+            json.append("\"cipher\":").append(quote(type));
+            json.append(",\"key\":").append(quote(outcome.key()));
+            json.append(",\"score\":").append(Double.isFinite(outcome.score()) ? outcome.score() : "null");
+            if (!operation.equals("crack")) json.append(",\"text\":").append(quote(outcome.text()));
+            json.append(",\"partial\":").append(outcome.partial());
+            json.append(",\"durationMicros\":").append(micros);
+            json.append('}');
+
+            reply(exchange, outcome.key().equals("") ? 422 : 200, json.toString());
+        } catch (NumberFormatException e) {
+            reply(exchange, 400, error("Caesar key and deadline must be numerals!"));
+        } catch (IOException e) {
+            reply(exchange, 404, error("Couldn't access file : " + e.getMessage()));
+        } catch (Exception e) {
+            reply(exchange, 500, error(e.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) return params;
+
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals < 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8).toLowerCase(),
+                    URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    /**
+     * Turns a string into a JSON string literal.
+     */
+    static String quote(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+                    else json.append(c);
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+}
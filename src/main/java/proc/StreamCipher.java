@@ -0,0 +1,116 @@
+package proc;
+
+import cipher.Caesar;
+import cipher.Vernam;
+import cipher.Vigenere;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class StreamCipher {
+
+    /**
+     * The amount of characters read at once from the input.
+     */
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Ciphers everything read from {@code in} and writes the result to {@code out}, one buffer at a time.
+     * <p>
+     * Each buffer is sanitized with {@link Preprocess#sanitizeToAlpha(String)} before being ciphered, so the result
+     * is the same as sanitizing and ciphering the whole text at once. Only one buffer is held in memory, whatever the
+     * size of the input.
+     * <p>
+     * N.B. : {@code out} is flushed but not closed.
+     *
+     * @param in   where the plain text is read from
+     * @param out  where the ciphered text is written to
+     * @param type the cipher to be used : Caesar, Vernam or Vigenere
+     * @param key  the key used to cipher : an integer for Caesar, a string for Vernam, letters for Vigenere
+     * @return the amount of characters ciphered
+     * @throws IOException if reading or writing failed
+     */
+    public static long encrypt(Reader in, Writer out, String type, String key) throws IOException {
+        return process(in, out, type, key, true);
+    }
+
+    /**
+     * Deciphers everything read from {@code in} with a known key and writes the result to {@code out}, one buffer at
+     * a time.
+     * <p>
+     * N.B. : a ciphered text cannot be cracked this way, as frequency analysis needs the whole text.
+     * {@code out} is flushed but not closed.
+     *
+     * @param in   where the ciphered text is read from
+     * @param out  where the plain text is written to
+     * @param type the cipher used : Caesar, Vernam or Vigenere
+     * @param key  the key used to cipher : an integer for Caesar, a string for Vernam, letters for Vigenere
+     * @return the amount of characters deciphered
+     * @throws IOException if reading or writing failed
+     */
+    public static long decrypt(Reader in, Writer out, String type, String key) throws IOException {
+        return process(in, out, type, key, false);
+    }
+
+    /**
+     * Opens a reader on a file, or on the standard input if {@code path} is "-".
+     *
+     * @param path the path to the file to read, or "-"
+     * @return a buffered UTF-8 reader
+     * @throws IOException if the file couldn't be opened
+     */
+    public static Reader openReader(String path) throws IOException {
+        if (path.equals("-"))
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        return Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a writer on a file, or on the standard output if {@code path} is "-".
+     *
+     * @param path the path to the file to write, or "-"
+     * @return a buffered UTF-8 writer
+     * @throws IOException if the file couldn't be opened
+     */
+    public static Writer openWriter(String path) throws IOException {
+        if (path.equals("-"))
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        return Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8);
+    }
+
+    private static long process(Reader in, Writer out, String type, String key, boolean encrypt) throws IOException {
+        boolean caesar = type.equalsIgnoreCase("Caesar");
+        boolean vigenere = type.equalsIgnoreCase("Vigenere");
+        if (!caesar && !vigenere && !type.equalsIgnoreCase("Vernam"))
+            throw new IllegalArgumentException("Unknown cipher : " + type);
+
+        int shift = caesar ? Integer.parseInt(key) : 0;
+        char[] vernamKey = vigenere ? key.toLowerCase().toCharArray() : key.toCharArray();
+
+        char[] buffer = new char[BUFFER_SIZE];
+        long position = 0; // how many characters were already processed, to keep the key aligned
+        int read;
+
+        while ((read = in.read(buffer)) != -1) {
+            String chunk = new String(buffer, 0, read);
+
+            // a ciphered text is not sanitized : Vernam produces characters outside of [a-z]
+            if (encrypt) chunk = Preprocess.sanitizeToAlpha(chunk);
+
+            String result;
+            if (caesar) result = encrypt ? Caesar.cipher(chunk, shift) : Caesar.decipher(chunk, shift);
+            else if (vigenere) result = encrypt
+                    ? Vigenere.cipher(chunk, vernamKey, position)
+                    : Vigenere.decipher(chunk, vernamKey, position);
+            else result = Vernam.cipher(chunk, vernamKey, position);
+
+            out.write(result);
+            position += chunk.length();
+        }
+
+        out.flush();
+        return position;
+    }
+}